@@ -0,0 +1,223 @@
+package math;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+  * Precomputed factorial tables for binomial coefficients modulo a prime or a prime power.
+  * <p>
+  * For a prime \(p\), the table holds \(i! \bmod p\) and \((i!)^{-1} \bmod p\) for \(0 \le i \lt p\).  The inverses
+  * come from a single modular inverse of \((p-1)!\), walked back down with \((i-1)!^{-1} = i \cdot (i!)^{-1}\).
+  * Each base-p digit in Lucas' Theorem then costs three table lookups.
+  * <p>
+  * For a prime power \(q = p^e\), the table holds the products of the integers up to i that are coprime to p.
+  * Following Granville's generalization of Lucas' Theorem, the p-free part of \(n!\) is assembled from that
+  * table one base-p digit at a time, and the power of p dividing the binomial is counted with Legendre's formula.
+  * <p>
+  * Tables are immutable once built, so they are safe to share between threads; {@link #forPrime(int)} and
+  * {@link #forPrimePower(int, int)} hand out one shared table per modulus.  The shared tables take at most
+  * {@link #SHARED_MAX_BYTES} together, dropping the least recently used to make room; a caller that needs a table
+  * to stay should construct its own.
+  */
+public final class BinomialTable {
+  /**
+    * The largest modulus for which a table will be built (about 64 MiB of tables).
+    */
+  public static final int MAX_MODULUS = 1 << 23;
+
+  /**
+    * The most memory that the shared tables may take together (128 MiB).
+    */
+  public static final long SHARED_MAX_BYTES = 1L << 27;
+
+  //The shared tables, least recently used first, and their total size; both guarded by shared
+  private static final LinkedHashMap<Long, BinomialTable> shared = new LinkedHashMap<Long, BinomialTable>(16, 0.75f, true);
+  private static long sharedBytes;
+
+  private final int p;       //The prime
+  private final int e;       //The exponent
+  private final int q;       //The modulus, p^e
+  private final int[] fact;    //For e == 1, i! mod p; otherwise, the product of 1..i coprime to p, mod q
+  private final int[] invFact; //For e == 1, (i!)^(-1) mod p; otherwise unused
+  private final long fullProduct; //fact[q]: the product of all units mod q, which is +1 or -1
+
+  /**
+    * Builds the table for a prime modulus.
+    * @param p the modulus; assumed to be prime (undefined behavior if not)
+    */
+  public BinomialTable(int p) {
+    this(p, 1);
+  }
+
+  /**
+    * Builds the table for a prime power modulus.
+    * @param p the prime; assumed to be prime (undefined behavior if not)
+    * @param e the exponent; positive
+    */
+  public BinomialTable(int p, int e) {
+    if (p < 2 || e < 1)
+      throw new IllegalArgumentException("Modulus must be a positive power of a prime: " + p + "^" + e);
+
+    long q = 1;
+    for (int i = 0; i < e; i++) {
+      q *= p;
+      if (q > MAX_MODULUS)
+        throw new IllegalArgumentException("Modulus " + p + "^" + e + " is too large for a table");
+    }
+
+    this.p = p;
+    this.e = e;
+    this.q = (int) q;
+
+    if (e == 1) {
+      fact = new int[p];
+      invFact = new int[p];
+
+      fact[0] = 1;
+      for (int i = 1; i < p; i++) fact[i] = (int) ((long) fact[i-1] * i % p);
+
+      //One inverse for the whole table
+      invFact[p-1] = (int) NumberTheory.modInverse(fact[p-1], p);
+      for (int i = p-1; i > 0; i--) invFact[i-1] = (int) ((long) invFact[i] * i % p);
+
+      fullProduct = p - 1; //Wilson's Theorem
+    }
+    else {
+      fact = new int[this.q + 1];
+      invFact = null;
+
+      fact[0] = 1;
+      for (int i = 1; i <= this.q; i++)
+        fact[i] = (i % p == 0) ? fact[i-1] : (int) ((long) fact[i-1] * i % this.q);
+
+      fullProduct = fact[this.q];
+    }
+  }
+
+  /**
+    * Returns the shared table for a prime, building it on first use.
+    * @param p the modulus; assumed to be prime (undefined behavior if not)
+    * @return the table for p
+    */
+  public static BinomialTable forPrime(int p) {
+    return forPrimePower(p, 1);
+  }
+
+  /**
+    * Returns the shared table for a prime power, building it if it isn't in the shared cache.
+    * @param p the prime; assumed to be prime (undefined behavior if not)
+    * @param e the exponent; positive
+    * @return the table for \(p^e\)
+    */
+  public static BinomialTable forPrimePower(int p, int e) {
+    Long key = ((long) p << 32) | e;
+    synchronized (shared) {
+      BinomialTable t = shared.get(key);
+      if (t != null) return t;
+    }
+
+    //Built outside the lock, so a large table doesn't hold up lookups of others; two threads may both build it
+    BinomialTable t = new BinomialTable(p, e);
+    synchronized (shared) {
+      BinomialTable other = shared.get(key);
+      if (other != null) return other;
+
+      shared.put(key, t);
+      sharedBytes += t.bytes();
+      for (Iterator<BinomialTable> it = shared.values().iterator(); sharedBytes > SHARED_MAX_BYTES; ) {
+        BinomialTable eldest = it.next();
+        if (eldest == t) break; //Only the new table is left
+        sharedBytes -= eldest.bytes();
+        it.remove();
+      }
+    }
+
+    return t;
+  }
+
+  //The total size of the shared tables, in bytes
+  static long sharedBytes() {
+    synchronized (shared) {
+      return sharedBytes;
+    }
+  }
+
+  /**
+    * @return the modulus, \(p^e\)
+    */
+  public int modulus() {
+    return q;
+  }
+
+  /**
+    * @return the approximate size of this table, in bytes
+    */
+  public long bytes() {
+    return 4L * fact.length + ((invFact == null) ? 0 : 4L * invFact.length);
+  }
+
+  /**
+    * Computes \(\binom{n}{r}\) modulo this table's modulus.
+    * <p>
+    * Takes \(\mathcal{O}(\log_p n)\) time for a prime and \(\mathcal{O}(\log_p n + \lg q)\) for a prime power.
+    * @param n the \(n\) in \(\binom{n}{r}\); non-negative
+    * @param r the \(r\) in \(\binom{n}{r}\)
+    * @return \(\binom{n}{r} \bmod p^e\); zero if r is negative or greater than n
+    */
+  public long binom(long n, long r) {
+    if (n < 0) throw new IllegalArgumentException("n must be non-negative: " + n);
+    if (r < 0 || r > n) return 0;
+
+    return (e == 1) ? lucas(n, r) : granville(n, r);
+  }
+
+  //Lucas' Theorem: the product of the binomials of the base-p digits
+  private long lucas(long n, long r) {
+    long retVal = 1;
+
+    while (r > 0) {
+      int ni = (int) (n % p), ri = (int) (r % p);
+      if (ri > ni) return 0;
+
+      retVal = retVal * fact[ni] % p * invFact[ri] % p * invFact[ni - ri] % p;
+      n /= p;
+      r /= p;
+    }
+
+    return retVal;
+  }
+
+  //p^c times the p-free parts of n!, r!^(-1) and (n-r)!^(-1), where c counts the factors of p in the binomial
+  private long granville(long n, long r) {
+    long m = n - r;
+    long c = legendre(n) - legendre(r) - legendre(m);
+    if (c >= e) return 0;
+
+    long retVal = pFreeFactorial(n);
+    retVal = retVal * NumberTheory.modInverse(pFreeFactorial(r), q) % q;
+    retVal = retVal * NumberTheory.modInverse(pFreeFactorial(m), q) % q;
+
+    for (long i = 0; i < c; i++) retVal = retVal * p % q;
+    return retVal;
+  }
+
+  //The exponent of p in n!, by Legendre's formula
+  private long legendre(long n) {
+    long retVal = 0;
+    for (n /= p; n > 0; n /= p) retVal += n;
+    return retVal;
+  }
+
+  //n! with every factor of p removed, mod q: n! = (units up to n) * p^(n/p) * (n/p)!
+  private long pFreeFactorial(long n) {
+    long retVal = 1;
+
+    for (; n > 1; n /= p) {
+      //The units up to n are (n/q) full blocks of units mod q, then a partial block
+      if (fullProduct != 1 && ((n / q) & 1) == 1) retVal = q - retVal; //fullProduct is -1 here
+      retVal = retVal * fact[(int) (n % q)] % q;
+    }
+
+    return retVal;
+  }
+}
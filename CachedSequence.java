@@ -0,0 +1,278 @@
+package math;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+  * A thread-safe, memoizing view of another sequence.
+  * <p>
+  * Terms are kept in two places.  A dense prefix, the first {@code prefixLength} terms, is a primitive array that
+  * grows by doubling as terms are asked for, computed in blocks with {@link Sequence#fill(long, long[])}.  Terms
+  * past the prefix go to a bounded cache of {@code capacity} entries, split into shards that each evict with the
+  * CLOCK algorithm: every entry has a reference bit that a hit sets, and the clock hand clears bits until it finds
+  * an entry that hasn't been used since its last pass.  That approximates least-recently-used eviction, but a hit
+  * only writes a flag, never a shared list.
+  * <p>
+  * Each shard is an open-addressing table of primitive keys and values, so a lookup allocates nothing.  Reads of
+  * cached terms take no locks.  Instead every slot has a version stamp, as in a seqlock: a writer makes it odd
+  * before changing the slot and even again after, and a reader only trusts a key and value read between two equal,
+  * even stamps.  A slot rewritten meanwhile, even back to the same key, costs a spurious miss, never a wrong value.
+  * A miss computes the term outside of any lock, so two threads that miss on the same index may both compute it; if
+  * the underlying sequence isn't {@link Sequence#isIndependent() independent}, calls to it are serialized.
+  * <p>
+  * {@link #hits()}, {@link #misses()} and {@link #evictions()} count what the cache has done, for sizing it.
+  */
+public class CachedSequence extends Sequence<Long> {
+  private static final int MAX_SHARDS = 64;
+  private static final int MIN_SHARD_CAPACITY = 16;
+  private static final int INITIAL_PREFIX = 1 << 6;
+  private static final long EMPTY = -1; //The key of an unused slot
+
+  private final Sequence<Long> sequence;
+  private final int prefixLength;
+  private volatile long[] prefix = new long[0]; //The first prefix.length terms; replaced, never modified
+  private final Object prefixLock = new Object();
+
+  private final Shard[] shards;
+  private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+  /**
+    * @param sequence the sequence whose terms are cached
+    * @param prefixLength how many terms from the start of the sequence to keep in a dense array; at most all of them
+    * @param capacity how many other terms to keep; roughly, as it's divided evenly among shards
+    */
+  public CachedSequence(Sequence<Long> sequence, int prefixLength, int capacity) {
+    super(sequence);
+    if (prefixLength < 0 || capacity < 0)
+      throw new IllegalArgumentException("Cache sizes must be non-negative: " + prefixLength + ", " + capacity);
+
+    this.sequence = sequence;
+    //A finite sequence has no terms past its stop index to fill the prefix with
+    this.prefixLength = (isFinite() && getStopIndex() - getStartIndex() < prefixLength) ?
+      (int) (getStopIndex() - getStartIndex() + 1) : prefixLength;
+
+    //As many shards as keeps each one reasonably large, up to a power of 2 that spreads out contention
+    int ct = Integer.highestOneBit(Math.max(1, Math.min(MAX_SHARDS, capacity / MIN_SHARD_CAPACITY)));
+    this.shards = new Shard[(capacity == 0) ? 0 : ct];
+    for (int i = 0; i < shards.length; i++) shards[i] = new Shard(capacity / ct);
+  }
+
+  @Override
+  public Long get(long n) {
+    return getLong(n);
+  }
+
+  @Override
+  public long getLong(long n) {
+    long offset = n - getStartIndex();
+    if (offset < 0 || (isFinite() && n > getStopIndex()))
+      throw new IllegalArgumentException("Index " + n + " is outside of the sequence");
+
+    if (offset < prefixLength) {
+      long[] known = prefix;
+      if (offset < known.length) {
+        hits.increment();
+        return known[(int) offset];
+      }
+
+      misses.increment();
+      return growPrefix((int) offset)[(int) offset];
+    }
+
+    if (shards.length == 0) {
+      misses.increment();
+      return compute(n);
+    }
+
+    long h = offset * 0x9E3779B97F4A7C15L; //Fibonacci hashing: the top bits pick the shard, lower ones the slot
+    Shard shard = shards[(int) (h >>> 58) & (shards.length - 1)];
+    int slot = shard.find(offset, h);
+    if (slot >= 0) {
+      long stamp = shard.stamps.get(slot);
+      if ((stamp & 1) == 0 && shard.keys.get(slot) == offset) {
+        long value = shard.values.get(slot);
+        if (shard.stamps.get(slot) == stamp) { //Nothing wrote the slot in between, so value belongs to offset
+          if (!shard.referenced[slot]) shard.referenced[slot] = true; //Only write when it changes
+          hits.increment();
+          return value;
+        }
+      }
+    }
+
+    misses.increment();
+    long value = compute(n);
+    shard.insert(offset, h, value);
+    return value;
+  }
+
+  /**
+    * Copies what it can from the prefix and looks up the rest term by term.
+    */
+  @Override
+  public void fill(long from, long[] out) {
+    long offset = from - getStartIndex();
+    if (offset < 0 || (isFinite() && from + out.length - 1 > getStopIndex()))
+      throw new IllegalArgumentException("Range starting at " + from + " is outside of the sequence");
+
+    int i = 0;
+    if (offset < prefixLength && out.length > 0) {
+      int end = (int) Math.min(prefixLength, offset + out.length);
+      long[] known = prefix;
+      if (known.length < end) {
+        misses.increment();
+        known = growPrefix(end - 1);
+      }
+      else {
+        hits.increment();
+      }
+
+      i = end - (int) offset;
+      System.arraycopy(known, (int) offset, out, 0, i);
+    }
+
+    for (; i < out.length; i++) out[i] = getLong(from + i);
+  }
+
+  /**
+    * @return true; the cache can be shared between threads, whether or not the underlying sequence can
+    */
+  @Override
+  public boolean isIndependent() {
+    return true;
+  }
+
+  /**
+    * @return the number of terms served from the cache
+    */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+    * @return the number of lookups that had to compute terms
+    */
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+    * @return the number of terms evicted from the sparse cache
+    */
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  //Extends the prefix to cover offset, at least doubling it; returns the new prefix
+  private long[] growPrefix(int offset) {
+    synchronized (prefixLock) {
+      long[] known = prefix;
+      if (offset < known.length) return known;
+
+      int len = (int) Math.min(prefixLength, Math.max(offset + 1L, Math.max(INITIAL_PREFIX, 2L * known.length)));
+      long[] block = new long[len - known.length];
+      long from = getStartIndex() + known.length;
+      if (sequence.isIndependent()) {
+        sequence.fill(from, block);
+      }
+      else {
+        synchronized (sequence) {
+          sequence.fill(from, block);
+        }
+      }
+
+      long[] grown = new long[len];
+      System.arraycopy(known, 0, grown, 0, known.length);
+      System.arraycopy(block, 0, grown, known.length, block.length);
+      prefix = grown;
+      return grown;
+    }
+  }
+
+  private long compute(long n) {
+    if (sequence.isIndependent()) return sequence.getLong(n);
+
+    synchronized (sequence) {
+      return sequence.getLong(n);
+    }
+  }
+
+  //Linear probing over primitive keys; the sparse part of the cache, changed only under the shard's lock
+  private final class Shard {
+    final AtomicLongArray keys, values; //Offsets from the start index, or EMPTY; and their terms
+    final AtomicLongArray stamps;       //Per-slot versions; odd while the slot is being written
+    final boolean[] referenced;         //CLOCK reference bits; set by readers without locking, which is benign
+    final int capacity, mask;
+    int size, hand;
+
+    Shard(int capacity) {
+      int slots = Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1; //At most half full
+      this.capacity = Math.max(1, capacity);
+      this.mask = slots - 1;
+      this.keys = new AtomicLongArray(slots);
+      this.values = new AtomicLongArray(slots);
+      this.stamps = new AtomicLongArray(slots);
+      this.referenced = new boolean[slots];
+      for (int i = 0; i < slots; i++) keys.set(i, EMPTY);
+    }
+
+    //The slot holding key, or -1; may miss a key that's being moved
+    int find(long key, long h) {
+      for (int i = home(h), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        long k = keys.get(i);
+        if (k == key) return i;
+        if (k == EMPTY) return -1;
+      }
+      return -1;
+    }
+
+    synchronized void insert(long key, long h, long value) {
+      if (find(key, h) >= 0) return; //Another thread got here first
+
+      if (size == capacity) {
+        //Give every referenced entry a second chance; the first unreferenced one goes
+        while (keys.get(hand) == EMPTY || referenced[hand]) {
+          referenced[hand] = false;
+          hand = (hand + 1) & mask;
+        }
+
+        remove(hand);
+        evictions.increment();
+        size--;
+      }
+
+      int i = home(h);
+      while (keys.get(i) != EMPTY) i = (i + 1) & mask;
+      write(i, key, value, false);
+      size++;
+    }
+
+    //Empties slot i, shifting later entries of its probe run back so that every entry stays reachable
+    private void remove(int i) {
+      for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+        long k = keys.get(j);
+        if (k == EMPTY) break;
+
+        //The entry at j can fill the hole at i unless its home lies cyclically in (i, j]
+        int home = home(k * 0x9E3779B97F4A7C15L);
+        if (((j - home) & mask) >= ((j - i) & mask)) {
+          write(i, k, values.get(j), referenced[j]);
+          i = j;
+        }
+      }
+      write(i, EMPTY, 0, false);
+    }
+
+    //Brackets the change with stamp increments, so a reader never pairs a key with another key's value
+    private void write(int i, long key, long value, boolean ref) {
+      stamps.incrementAndGet(i);
+      keys.set(i, key);
+      values.set(i, value);
+      referenced[i] = ref;
+      stamps.incrementAndGet(i);
+    }
+
+    private int home(long h) {
+      return (int) (h >>> 20) & mask;
+    }
+  }
+}
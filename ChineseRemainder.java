@@ -0,0 +1,422 @@
+package math;
+
+import java.math.BigInteger;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+  * The Chinese Remainder Theorem for a fixed set of pairwise coprime moduli \(m_0, \ldots, m_{k-1}\), with product
+  * M: every x in \([0, M)\) is determined by its residues \(x \bmod m_i\).
+  * <p>
+  * Reconstruction uses Garner's algorithm, which finds the mixed-radix digits of x,
+  * $$x = v_0 + v_1 m_0 + v_2 m_0 m_1 + \cdots + v_{k-1} m_0 \cdots m_{k-2}, \quad 0 \le v_i \lt m_i,$$
+  * one at a time, each from a single residue.  Everything that depends only on the moduli (the inverses
+  * \((m_0 \cdots m_{i-1})^{-1} \bmod m_i\) and the products \(m_0 \cdots m_{i-1} \bmod m_j\)) is computed by the
+  * constructor, so a reconstruction costs \(k(k+1)/2\) modular multiplications and no inverses.  Since the digits are
+  * small, x can then be evaluated as a {@link BigInteger}, exactly as a long if M fits in one, or modulo anything
+  * else with no big numbers at all; the last is how a product computed modulo several NTT primes is brought back
+  * modulo the prime that was wanted.
+  * <p>
+  * The array methods reconstruct many values at once, and split long arrays across the common pool.
+  * <p>
+  * A vector of residues is also a number in a residue number system: sums, differences and products of numbers
+  * below M are computed independently modulo each \(m_i\), with no carries between them, and converted back only at
+  * the end.  {@link #withPrimes(int)} builds a system of 62-bit primes with room for a given number of bits.
+  * <p>
+  * For two congruences whose moduli needn't be coprime, use {@link #combine(long, long, long, long)}.
+  */
+public final class ChineseRemainder {
+  private static final long SMALL = 1L << 31;       //Moduli up to this are multiplied without mulMod
+  private static final int PARALLEL_WORK = 1 << 16; //Multiplications below which an array stays on one thread
+  private static final int CHUNK = 1 << 12;
+
+  private final long[] moduli;
+  private final long[] inverses; //inverses[i] = (m_0 ... m_(i-1))^(-1) mod m_i
+  private final long[][] radix;  //radix[i][t] = m_0 ... m_(t-1) mod m_i, for t < i
+  private final long[] wrapped;  //wrapped[i] = m_0 ... m_(i-1) mod 2^64
+  private final boolean small;   //Whether every modulus is at most SMALL
+  private final BigInteger product;
+
+  /**
+    * @param moduli the moduli; each at least 2, and pairwise coprime
+    */
+  public ChineseRemainder(long... moduli) {
+    int k = moduli.length;
+    if (k == 0) throw new IllegalArgumentException("At least one modulus is required");
+
+    this.moduli = moduli.clone();
+    this.inverses = new long[k];
+    this.radix = new long[k][];
+    this.wrapped = new long[k];
+
+    boolean small = true;
+    BigInteger product = BigInteger.ONE;
+    for (int i = 0; i < k; i++) {
+      long m = this.moduli[i];
+      if (m < 2) throw new IllegalArgumentException("Moduli must be at least 2: " + m);
+      for (int t = 0; t < i; t++) {
+        if (NumberTheory.gcd(this.moduli[t], m) != 1)
+          throw new IllegalArgumentException("Moduli aren't coprime: " + this.moduli[t] + ", " + m);
+      }
+
+      radix[i] = new long[i];
+      long p = 1 % m;
+      for (int t = 0; t < i; t++) {
+        radix[i][t] = p;
+        p = NumberTheory.mulMod(p, this.moduli[t], m);
+      }
+      inverses[i] = NumberTheory.modInverse(p, m);
+      wrapped[i] = (i == 0) ? 1 : wrapped[i-1] * this.moduli[i-1];
+
+      small &= m <= SMALL;
+      product = product.multiply(BigInteger.valueOf(m));
+    }
+
+    this.small = small;
+    this.product = product;
+  }
+
+  /**
+    * Finds enough 62-bit primes (the largest ones, counting down from \(2^{62}\)) that their product exceeds
+    * \(2^{bits}\), so that any residue vector holds a non-negative integer of that many bits.
+    * @param bits the number of bits needed; positive
+    * @return a system of those primes
+    */
+  public static ChineseRemainder withPrimes(int bits) {
+    if (bits < 1) throw new IllegalArgumentException("Bit count must be positive: " + bits);
+
+    int k = bits / 61 + 1; //Each prime contributes just under 62 bits
+    long[] primes = new long[k];
+    long p = (1L << 62) + 1;
+    for (int i = 0; i < k; i++) {
+      do p -= 2; while (!NumberTheory.isPrime(p));
+      primes[i] = p;
+    }
+
+    return new ChineseRemainder(primes);
+  }
+
+  /**
+    * Solves the pair of congruences \(x \equiv r_1 \pmod{m_1}\), \(x \equiv r_2 \pmod{m_2}\), whose moduli needn't
+    * be coprime.  Folding this over a list of congruences solves them all.
+    * @param r1 the first residue; any value
+    * @param m1 the first modulus; positive
+    * @param r2 the second residue; any value
+    * @param m2 the second modulus; positive
+    * @return {x, L}, where \(L = \mathrm{lcm}(m_1, m_2)\) and x in \([0, L)\) is the solution
+    * @throws ArithmeticException if the congruences have no common solution, or L doesn't fit in a long
+    */
+  public static long[] combine(long r1, long m1, long r2, long m2) {
+    if (m1 < 1 || m2 < 1)
+      throw new IllegalArgumentException("Moduli must be positive: " + m1 + ", " + m2);
+
+    r1 = Math.floorMod(r1, m1);
+    r2 = Math.floorMod(r2, m2);
+    long g = NumberTheory.gcd(m1, m2);
+    if ((r2 - r1) % g != 0)
+      throw new ArithmeticException("No x is " + r1 + " mod " + m1 + " and " + r2 + " mod " + m2);
+
+    //x = r1 + m1 t, where (m1 / g) t = (r2 - r1) / g mod (m2 / g)
+    long n = m2 / g, lcm = Math.multiplyExact(m1 / g, m2);
+    long t = NumberTheory.mulMod(Math.floorMod((r2 - r1) / g, n), NumberTheory.modInverse(m1 / g, n), n);
+    return new long[] { r1 + m1 * t, lcm };
+  }
+
+  /**
+    * @return the number of moduli
+    */
+  public int size() {
+    return moduli.length;
+  }
+
+  /**
+    * @param i an index
+    * @return the i-th modulus
+    */
+  public long modulus(int i) {
+    return moduli[i];
+  }
+
+  /**
+    * @return the product of the moduli, M
+    */
+  public BigInteger product() {
+    return product;
+  }
+
+  /**
+    * @param residues the residues of x modulo each modulus, in order; reduced if need be
+    * @return x, in \([0, M)\), if M fits in a long; in general, x modulo \(2^{64}\)
+    */
+  public long toLong(long[] residues) {
+    long[] v = digits(residues);
+    return wrap(v);
+  }
+
+  /**
+    * @param residues the residues of x modulo each modulus, in order; reduced if need be
+    * @param m a modulus; positive
+    * @return x mod m, where x in \([0, M)\) is the reconstructed value
+    */
+  public long reconstruct(long[] residues, long m) {
+    long[] v = digits(residues);
+    return evaluate(v, weights(m), m);
+  }
+
+  /**
+    * @param residues the residues of x modulo each modulus, in order; reduced if need be
+    * @return x, in \([0, M)\)
+    */
+  public BigInteger toBigInteger(long[] residues) {
+    return horner(digits(residues));
+  }
+
+  /**
+    * Reconstructs every value of an array.
+    * @param residues residues[i][j] is the j-th value modulo the i-th modulus
+    * @param out where to put the values, each as by {@link #toLong(long[])}
+    */
+  public void toLong(long[][] residues, long[] out) {
+    checkShape(residues.length, out.length, i -> residues[i].length);
+    parallelFor(out.length, (from, to, v) -> {
+      for (int j = from; j < to; j++) {
+        for (int i = 0; i < v.length; i++) digit(i, residues[i][j], v);
+        out[j] = wrap(v);
+      }
+    });
+  }
+
+  /**
+    * Reconstructs every value of an array, modulo m.
+    * @param residues residues[i][j] is the j-th value modulo the i-th modulus
+    * @param m a modulus; positive
+    * @param out where to put the values, each as by {@link #reconstruct(long[], long)}
+    */
+  public void reconstruct(long[][] residues, long m, long[] out) {
+    checkShape(residues.length, out.length, i -> residues[i].length);
+    long[] w = weights(m);
+    parallelFor(out.length, (from, to, v) -> {
+      for (int j = from; j < to; j++) {
+        for (int i = 0; i < v.length; i++) digit(i, residues[i][j], v);
+        out[j] = evaluate(v, w, m);
+      }
+    });
+  }
+
+  /**
+    * Reconstructs every value of an array, modulo m, as from transforms modulo several NTT primes.
+    * @param residues residues[i][j] is the j-th value modulo the i-th modulus
+    * @param m a modulus; positive
+    * @param out where to put the values, each as by {@link #reconstruct(long[], long)}
+    */
+  public void reconstruct(int[][] residues, int m, int[] out) {
+    checkShape(residues.length, out.length, i -> residues[i].length);
+    long[] w = weights(m);
+    parallelFor(out.length, (from, to, v) -> {
+      for (int j = from; j < to; j++) {
+        for (int i = 0; i < v.length; i++) digit(i, residues[i][j], v);
+        out[j] = (int) evaluate(v, w, m);
+      }
+    });
+  }
+
+  /**
+    * Reconstructs every value of an array.
+    * @param residues residues[i][j] is the j-th value modulo the i-th modulus; each array the same length
+    * @return the values, each in \([0, M)\)
+    */
+  public BigInteger[] toBigInteger(long[][] residues) {
+    if (residues.length != moduli.length)
+      throw new IllegalArgumentException("Expected residues for " + moduli.length + " moduli, got " + residues.length);
+    BigInteger[] out = new BigInteger[residues[0].length];
+    checkShape(residues.length, out.length, i -> residues[i].length);
+
+    parallelFor(out.length, (from, to, v) -> {
+      for (int j = from; j < to; j++) {
+        for (int i = 0; i < v.length; i++) digit(i, residues[i][j], v);
+        out[j] = horner(v);
+      }
+    });
+    return out;
+  }
+
+  /**
+    * @param x a number
+    * @return the residues of x modulo each modulus, in \([0, m_i)\)
+    */
+  public long[] residues(long x) {
+    long[] retVal = new long[moduli.length];
+    for (int i = 0; i < retVal.length; i++) retVal[i] = Math.floorMod(x, moduli[i]);
+    return retVal;
+  }
+
+  /**
+    * Reduces x modulo every modulus.  With many moduli, they're spread across the common pool.
+    * @param x a number
+    * @return the residues of x modulo each modulus, in \([0, m_i)\)
+    */
+  public long[] residues(BigInteger x) {
+    long[] retVal = new long[moduli.length];
+    IntStream range = IntStream.range(0, retVal.length);
+    if ((long) retVal.length * (x.bitLength() / 64 + 1) >= PARALLEL_WORK) range = range.parallel();
+
+    range.forEach(i -> retVal[i] = x.mod(BigInteger.valueOf(moduli[i])).longValue());
+    return retVal;
+  }
+
+  /**
+    * @param a the residues of x
+    * @param b the residues of y
+    * @return the residues of x + y
+    */
+  public long[] add(long[] a, long[] b) {
+    long[] retVal = new long[check(a, b)];
+    for (int i = 0; i < retVal.length; i++) {
+      long m = moduli[i], s = a[i] - (m - b[i]);
+      retVal[i] = (s < 0) ? s + m : s;
+    }
+    return retVal;
+  }
+
+  /**
+    * @param a the residues of x
+    * @param b the residues of y
+    * @return the residues of x - y
+    */
+  public long[] subtract(long[] a, long[] b) {
+    long[] retVal = new long[check(a, b)];
+    for (int i = 0; i < retVal.length; i++) {
+      long d = a[i] - b[i];
+      retVal[i] = (d < 0) ? d + moduli[i] : d;
+    }
+    return retVal;
+  }
+
+  /**
+    * @param a the residues of x
+    * @param b the residues of y
+    * @return the residues of xy
+    */
+  public long[] multiply(long[] a, long[] b) {
+    long[] retVal = new long[check(a, b)];
+    for (int i = 0; i < retVal.length; i++) retVal[i] = mul(a[i], b[i], moduli[i]);
+    return retVal;
+  }
+
+  /**
+    * Multiplies two integers through the residue number system: reduce both modulo every modulus (in parallel,
+    * with many moduli), multiply the residues, and reconstruct.  Only the final reconstruction is quadratic in the
+    * number of moduli, so this pays off over {@link BigInteger#multiply(BigInteger)} when the residues are reused.
+    * @param x a number
+    * @param y a number
+    * @return xy
+    * @throws ArithmeticException if \(|xy|\) might not be below M
+    */
+  public BigInteger multiply(BigInteger x, BigInteger y) {
+    if (x.bitLength() + y.bitLength() >= product.bitLength())
+      throw new ArithmeticException("Product of " + x.bitLength() + "- and " + y.bitLength()
+                                      + "-bit numbers may not fit in " + moduli.length + " moduli");
+
+    BigInteger retVal = toBigInteger(multiply(residues(x.abs()), residues(y.abs())));
+    return (x.signum() * y.signum() < 0) ? retVal.negate() : retVal;
+  }
+
+  //Garner's step: the i-th digit of x, given its residue mod m_i and the digits before it
+  private void digit(int i, long r, long[] v) {
+    long m = moduli[i], t = (r >= 0 && r < m) ? r : Math.floorMod(r, m);
+    long[] rad = radix[i];
+
+    if (small) {
+      //Every digit and radix entry is below 2^31, so each product fits without reducing its factors
+      for (int s = 0; s < i; s++) {
+        t -= v[s] * rad[s] % m;
+        if (t < 0) t += m;
+      }
+      v[i] = t * inverses[i] % m;
+    }
+    else {
+      for (int s = 0; s < i; s++) {
+        t -= NumberTheory.mulMod(v[s], rad[s], m);
+        if (t < 0) t += m;
+      }
+      v[i] = NumberTheory.mulMod(t, inverses[i], m);
+    }
+  }
+
+  private long[] digits(long[] residues) {
+    if (residues.length != moduli.length)
+      throw new IllegalArgumentException("Expected " + moduli.length + " residues, got " + residues.length);
+
+    long[] v = new long[moduli.length];
+    for (int i = 0; i < v.length; i++) digit(i, residues[i], v);
+    return v;
+  }
+
+  private long wrap(long[] v) {
+    long retVal = 0;
+    for (int i = 0; i < v.length; i++) retVal += v[i] * wrapped[i];
+    return retVal;
+  }
+
+  //w[i] = m_0 ... m_(i-1) mod m
+  private long[] weights(long m) {
+    if (m < 1) throw new IllegalArgumentException("Modulus must be positive: " + m);
+
+    long[] w = new long[moduli.length];
+    w[0] = 1 % m;
+    for (int i = 1; i < w.length; i++) w[i] = NumberTheory.mulMod(w[i-1], moduli[i-1], m);
+    return w;
+  }
+
+  private static long evaluate(long[] v, long[] w, long m) {
+    long retVal = 0;
+    for (int i = 0; i < v.length; i++) {
+      retVal += mul((v[i] < m) ? v[i] : v[i] % m, w[i], m) - m;
+      if (retVal < 0) retVal += m;
+    }
+    return retVal;
+  }
+
+  //x = v_0 + m_0 (v_1 + m_1 (v_2 + ...))
+  private BigInteger horner(long[] v) {
+    BigInteger retVal = BigInteger.valueOf(v[v.length - 1]);
+    for (int i = v.length - 2; i >= 0; i--)
+      retVal = retVal.multiply(BigInteger.valueOf(moduli[i])).add(BigInteger.valueOf(v[i]));
+    return retVal;
+  }
+
+  private static long mul(long a, long b, long m) {
+    return (m <= SMALL) ? a * b % m : NumberTheory.mulMod(a, b, m);
+  }
+
+  private int check(long[] a, long[] b) {
+    if (a.length != moduli.length || b.length != moduli.length)
+      throw new IllegalArgumentException("Expected " + moduli.length + " residues, got " + a.length + " and " + b.length);
+    return a.length;
+  }
+
+  private void checkShape(int rows, int n, IntUnaryOperator length) {
+    if (rows != moduli.length)
+      throw new IllegalArgumentException("Expected residues for " + moduli.length + " moduli, got " + rows);
+    for (int i = 0; i < rows; i++) {
+      if (length.applyAsInt(i) < n)
+        throw new IllegalArgumentException("Residue array " + i + " is shorter than the output, " + n);
+    }
+  }
+
+  //Runs body over [0, n) in chunks, each with its own digit buffer; in parallel if there's enough work
+  private void parallelFor(int n, Block body) {
+    int k = moduli.length;
+    if ((long) n * k * k < PARALLEL_WORK) {
+      body.run(0, n, new long[k]);
+      return;
+    }
+
+    IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel()
+      .forEach(c -> body.run(c * CHUNK, Math.min(n, (c + 1) * CHUNK), new long[k]));
+  }
+
+  private interface Block {
+    void run(int from, int to, long[] digits);
+  }
+}
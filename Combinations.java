@@ -0,0 +1,295 @@
+package math;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+  * Enumerates, ranks and unranks the k-element subsets of \(\{0, 1, \ldots, n-1\}\).
+  * <p>
+  * Subsets of up to 64 elements are bit masks, stepped with {@link Combinatorics#gosper(int) Gosper's hack}
+  * widened to a long.  Larger sets use a sorted int[] of indices, which is updated in place.  Either way, subsets
+  * come out in colexicographic order (for masks, that's increasing numeric order), and the position of a subset
+  * \(c_0 \lt c_1 \lt \cdots \lt c_{k-1}\) in that order is its rank in the combinatorial number system,
+  * \(\sum_i \binom{c_i}{i+1}\).
+  * <p>
+  * Unranking jumps straight to any position, so the space can be cut into rank ranges and sharded: that is how
+  * {@link #spliterator(int, int)} splits for parallel streams.  Nothing is allocated per subset.
+  */
+public final class Combinations {
+  private Combinations() {}
+
+  /**
+    * Gosper's hack for longs: the next larger long with the same number of set bits.
+    * <p>
+    * The result is meaningless after the last k-subset of a 64-element set; count iterations with
+    * {@link Combinatorics#binom(long, long)} instead of testing the mask.
+    * @param mask a non-zero bit mask
+    * @return the next mask, in colexicographic order
+    */
+  public static long nextMask(long mask) {
+    long c = mask & -mask;
+    long r = mask + c;
+    return (((r ^ mask) >>> 2) >>> Long.numberOfTrailingZeros(c)) | r; //Shift rather than divide by c
+  }
+
+  /**
+    * @param k the size of the subset; \(0 \le k \le 64\)
+    * @return the first k-subset: the k lowest bits
+    */
+  public static long firstMask(int k) {
+    checkMask(k, k);
+    return (k == 64) ? -1L : (1L << k) - 1;
+  }
+
+  /**
+    * Calls action with every k-subset of an n-element set, as a bit mask, in colexicographic order.
+    * @param n the size of the set; \(0 \le n \le 64\)
+    * @param k the size of the subsets
+    * @param action called once per subset
+    */
+  public static void forEachMask(int n, int k, LongConsumer action) {
+    checkMask(n, k);
+    if (k > n) return;
+
+    long mask = firstMask(k);
+    for (long ct = Combinatorics.binom(n, k); ct > 0; ct--) {
+      action.accept(mask);
+      if (ct > 1) mask = nextMask(mask);
+    }
+  }
+
+  /**
+    * @param mask a k-subset, as a bit mask
+    * @return the rank of the subset in colexicographic order, starting from 0
+    */
+  public static long rank(long mask) {
+    long retVal = 0;
+
+    for (int i = 1; mask != 0; i++) {
+      retVal += Combinatorics.binom(Long.numberOfTrailingZeros(mask), i);
+      mask &= mask - 1;
+    }
+
+    return retVal;
+  }
+
+  /**
+    * @param n the size of the set; \(0 \le n \le 64\)
+    * @param k the size of the subset
+    * @param rank a rank in \([0, \binom{n}{k})\)
+    * @return the k-subset with the given rank in colexicographic order, as a bit mask
+    */
+  public static long unrankMask(int n, int k, long rank) {
+    checkMask(n, k);
+    checkRank(n, k, rank);
+
+    long mask = 0;
+    int c = n;
+    for (int i = k; i > 0; i--) {
+      //The largest c with C(c, i) <= rank is the position of the ith element
+      do c--; while (Combinatorics.binom(c, i) > rank);
+      mask |= 1L << c;
+      rank -= Combinatorics.binom(c, i);
+    }
+
+    return mask;
+  }
+
+  /**
+    * Advances a sorted index array to the next k-subset, in colexicographic order, in place.
+    * @param c a k-subset of \(\{0, \ldots, n-1\}\), in increasing order
+    * @param n the size of the set
+    * @return false (leaving c unchanged) if c was the last subset
+    */
+  public static boolean next(int[] c, int n) {
+    int k = c.length;
+
+    //Find the lowest element that can move up without bumping into the next one
+    int j = 0;
+    while (j < k && c[j] + 1 == ((j + 1 < k) ? c[j+1] : n)) j++;
+    if (j == k) return false;
+
+    c[j]++;
+    for (int i = 0; i < j; i++) c[i] = i;
+    return true;
+  }
+
+  /**
+    * @param c a k-subset, in increasing order
+    * @return the rank of the subset in colexicographic order, starting from 0
+    * @throws ArithmeticException if the rank doesn't fit in a long
+    */
+  public static long rank(int[] c) {
+    long retVal = 0;
+    for (int i = 0; i < c.length; i++)
+      retVal = Math.addExact(retVal, Combinatorics.binom(c[i], i + 1));
+
+    return retVal;
+  }
+
+  /**
+    * Writes the k-subset with the given rank, in colexicographic order, into c (where k is c.length).
+    * @param n the size of the set
+    * @param rank a rank in \([0, \binom{n}{k})\)
+    * @param c receives the subset, in increasing order
+    */
+  public static void unrank(int n, long rank, int[] c) {
+    int k = c.length;
+    checkRank(n, k, rank);
+
+    int pos = n;
+    for (int i = k; i > 0; i--) {
+      long b;
+      do pos--; while ((b = binomOrMax(pos, i)) > rank);
+      c[i-1] = pos;
+      rank -= b;
+    }
+  }
+
+  /**
+    * Calls action with each k-subset whose rank is in \([from, to)\), reusing a single index array.
+    * <p>
+    * The array passed to action is overwritten by the next call, so copy it if you need to keep it.  Disjoint rank
+    * ranges can be processed on different threads.
+    * @param n the size of the set
+    * @param k the size of the subsets
+    * @param from the first rank (inclusive)
+    * @param to the last rank (exclusive); at most \(\binom{n}{k}\)
+    * @param action called once per subset
+    */
+  public static void forEachCombination(int n, int k, long from, long to, Consumer<int[]> action) {
+    if (from >= to) return;
+    checkRank(n, k, to - 1);
+
+    int[] c = new int[k];
+    unrank(n, from, c);
+    for (long r = from; r < to; r++) {
+      action.accept(c);
+      if (r + 1 < to) next(c, n);
+    }
+  }
+
+  /**
+    * Calls action with every k-subset of an n-element set, reusing a single index array.
+    * @param n the size of the set
+    * @param k the size of the subsets
+    * @param action called once per subset; the array is overwritten by the next call
+    */
+  public static void forEachCombination(int n, int k, Consumer<int[]> action) {
+    if (k < 0 || k > n) return;
+
+    int[] c = new int[k];
+    for (int i = 0; i < k; i++) c[i] = i;
+    do action.accept(c); while (next(c, n));
+  }
+
+  /**
+    * Returns a spliterator over the k-subsets of an n-element set, as bit masks.
+    * <p>
+    * It splits by halving its rank range, unranking the midpoint, so the pieces are exactly balanced.
+    * @param n the size of the set; \(0 \le n \le 64\)
+    * @param k the size of the subsets
+    * @return a sized, splittable spliterator over the subsets, in colexicographic order
+    */
+  public static Spliterator.OfLong spliterator(int n, int k) {
+    checkMask(n, k);
+    return new MaskSpliterator(n, k, 0, (k > n) ? 0 : Combinatorics.binom(n, k));
+  }
+
+  /**
+    * @param n the size of the set; \(0 \le n \le 64\)
+    * @param k the size of the subsets
+    * @return a sequential stream of the k-subsets, as bit masks; call parallel() to spread it over all cores
+    */
+  public static LongStream stream(int n, int k) {
+    return StreamSupport.longStream(spliterator(n, k), false);
+  }
+
+  private static final class MaskSpliterator implements Spliterator.OfLong {
+    private final int n, k;
+    private long next, end; //Rank range [next, end)
+    private long mask;      //The subset of rank next - 1, the last one emitted, once started
+    private boolean started;
+
+    MaskSpliterator(int n, int k, long from, long to) {
+      this.n = n;
+      this.k = k;
+      this.next = from;
+      this.end = to;
+    }
+
+    @Override
+    public boolean tryAdvance(LongConsumer action) {
+      if (next >= end) return false;
+
+      mask = started ? nextMask(mask) : unrankMask(n, k, next);
+      started = true;
+      next++;
+      action.accept(mask);
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action) {
+      if (next >= end) return;
+
+      long m = started ? nextMask(mask) : unrankMask(n, k, next);
+      for (; ; m = nextMask(m)) {
+        action.accept(m);
+        if (++next >= end) break;
+      }
+
+      mask = m;
+      started = true;
+    }
+
+    @Override
+    public Spliterator.OfLong trySplit() {
+      long remaining = end - next;
+      if (remaining < 2) return null;
+
+      //Hand off the front half; this spliterator restarts from the midpoint
+      long mid = next + (remaining >>> 1);
+      MaskSpliterator prefix = new MaskSpliterator(n, k, next, mid);
+      prefix.mask = mask;
+      prefix.started = started;
+
+      next = mid;
+      started = false;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return end - next;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+  }
+
+  //C(n, k), or Long.MAX_VALUE if it doesn't fit; big values are only ever compared against a rank
+  private static long binomOrMax(long n, long k) {
+    try {
+      return Combinatorics.binom(n, k);
+    }
+    catch (ArithmeticException tooBig) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  private static void checkMask(int n, int k) {
+    if (n < 0 || n > 64 || k < 0)
+      throw new IllegalArgumentException("Bit masks need 0 <= k and 0 <= n <= 64: n=" + n + ", k=" + k);
+  }
+
+  private static void checkRank(int n, int k, long rank) {
+    if (k < 0 || k > n || rank < 0 || rank >= binomOrMax(n, k))
+      throw new IllegalArgumentException("No " + k + "-subset of " + n + " elements has rank " + rank);
+  }
+}
@@ -1,6 +1,12 @@
 package math;
 
+import java.math.BigInteger;
+import java.util.*;
+
 public class Combinatorics { 
+  //binomMod builds a table for p once a query would take at least p / TABLE_RATIO multiplications directly
+  private static final int TABLE_RATIO = 8;
+  
   /**
     * Given an integer n, returns the next integer with the same number of set bits.
     * <p>
@@ -13,46 +19,139 @@ public class Combinatorics {
       int r = n + c;
       return (((r^n) >>> 2) / c) | r;
     }
+    
+  /**
+    * The largest n for which every \(\binom{n}{k}\) fits in a long (\(\binom{66}{33} \approx 7.2 \cdot 10^{18}\)).
+    */
+  public static final int PASCAL_ROWS = 66;
+  
+  //Rows 0..PASCAL_ROWS of Pascal's triangle, built on first use (holder idiom, so it's thread-safe)
+  private static final class Pascal {
+    static final long[][] rows = new long[PASCAL_ROWS + 1][];
+    
+    static {
+      for (int n = 0; n <= PASCAL_ROWS; n++) {
+        rows[n] = new long[n + 1];
+        rows[n][0] = rows[n][n] = 1;
+        for (int k = 1; k < n; k++) rows[n][k] = rows[n-1][k-1] + rows[n-1][k];
+      }
+    }
+  }
+  
    /**
     * Computes the binomial coefficient $\binom{n}{k}$.
     * <p>
-    * I'm careful with division and multiplication here to preserve (as much as possible)
-    * the validity of the answer accouting for overflow.
+    * Small n are read from a cached block of Pascal's triangle.  Otherwise, this builds
+    * \(\binom{n-k+i}{i}\) for \(i = 1, \ldots, k\), cancelling the common factor of each denominator
+    * against the running product before multiplying, so intermediate values never exceed the result.
+    * @param n the \(n\) in \(\binom{n}{k}\); non-negative
+    * @param k the \(k\) in \(\binom{n}{k}\)
+    * @return \(\binom{n}{k}\); zero if k is negative or greater than n
+    * @throws ArithmeticException if the result doesn't fit in a long
+    * @see #binomExact(long, long)
     */
   public static long binom(long n, long k) {
-    if (k > (n>>1)) return binom(n, n-k);
-    long res = n;
+    if (n < 0) throw new IllegalArgumentException("n must be non-negative: " + n);
+    if (k < 0 || k > n) return 0;
+    if (k > (n>>1)) k = n-k;
+    if (n <= PASCAL_ROWS) return Pascal.rows[(int) n][(int) k];
     
-    for (int i = 1; i < k; i++) {
-      res = (res * (n - i)) / (i+1);
+    long res = 1;
+    for (long i = 1; i <= k; i++) {
+      //res = C(n-k+i-1, i-1), and res * (n-k+i) / i is exact; so i/g divides n-k+i
+      long g = NumberTheory.gcd(res, i);
+      res = Math.multiplyExact(res / g, (n - k + i) / (i / g));
     }
     
     return res;
   }
   
+  /**
+    * Computes the binomial coefficient \(\binom{n}{k}\) exactly, however large.
+    * <p>
+    * Results that fit in a long come from {@link #binom(long, long)}.  Otherwise, by Kummer's Theorem the exponent
+    * of each prime \(p \le n\) in \(\binom{n}{k}\) is the number of carries when adding k and n-k in base p;
+    * equivalently, by Legendre's formula, \(\sum_i \lfloor n/p^i \rfloor - \lfloor k/p^i \rfloor - \lfloor (n-k)/p^i \rfloor\).
+    * The prime powers are multiplied together with a balanced product tree.
+    * @param n the \(n\) in \(\binom{n}{k}\); non-negative, and small enough to sieve up to
+    * @param k the \(k\) in \(\binom{n}{k}\)
+    * @return \(\binom{n}{k}\)
+    */
+  public static BigInteger binomExact(long n, long k) {
+    if (n < 0) throw new IllegalArgumentException("n must be non-negative: " + n);
+    if (k < 0 || k > n) return BigInteger.ZERO;
+    if (k > (n>>1)) k = n-k;
+    
+    try {
+      return BigInteger.valueOf(binom(n, k));
+    }
+    catch (ArithmeticException tooBig) {
+      //Fall through to the prime factorization
+    }
+    
+    final long K = k, M = n - k;
+    final ArrayList<BigInteger> factors = new ArrayList<BigInteger>();
+    PrimeSieve.forEachPrime(2, n, p -> {
+      int e = 0;
+      for (long pi = p, N = n; pi <= N; ) {
+        e += (N / pi) - (K / pi) - (M / pi);
+        if (pi > N / p) break; //The next power would overflow, and exceeds n anyway
+        pi *= p;
+      }
+      
+      if (e > 0) factors.add(BigInteger.valueOf(p).pow(e));
+    });
+    
+    return product(factors, 0, factors.size());
+  }
+  
+  //Multiplies list[from..to) pairwise, so the big multiplications have balanced operands
+  private static BigInteger product(List<BigInteger> list, int from, int to) {
+    if (to - from == 0) return BigInteger.ONE;
+    if (to - from == 1) return list.get(from);
+    
+    int mid = (from + to) >>> 1;
+    return product(list, from, mid).multiply(product(list, mid, to));
+  }
+  
   /**
     * Computes the binomial coefficient \(\binom{n}{r} \pmod p\), where \(p\) is a prime number
     * Uses Lucas' Theorem and modular inverses.
     * Assumes that \(p\) is prime--otherwise, undefined behavior results.
+    * <p>
+    * Directly, each base-p digit costs \(\mathcal{O}(\min(r_i, n_i - r_i))\) multiplications and one modular
+    * inverse.  When \(\min(r, n - r) \ge p / 8\) and \(p \le\) {@link BinomialTable#MAX_MODULUS}, that would cost
+    * about as much as building a {@link BinomialTable} for p, so the shared table is used instead: building it takes
+    * \(\mathcal{O}(p)\) time and 8p bytes (64 MiB for p near the maximum), after which each call takes
+    * \(\mathcal{O}(\log_p n)\) time for as long as the table stays in the shared cache, which holds at most
+    * {@link BinomialTable#SHARED_MAX_BYTES}.  To keep a table for good, construct one and call
+    * {@link BinomialTable#binom(long, long)} on it.
     * @param n the \(n\) in \(\binom{n}{r} \pmod p\)
     * @param r the \(r\) in \(\binom{n}{r} \pmod p\)
     * @param p the \(p\) in \(\binom{n}{r} \pmod p\)
     * @return the result of \(\binom{n}{r} \pmod p\)
     */
   public static long binomMod(long n, long r, int p) {
+    if (r < 0 || r > n) return 0;
+    if (p <= BinomialTable.MAX_MODULUS && Math.min(r, n - r) >= p / TABLE_RATIO)
+      return BinomialTable.forPrime(p).binom(n, r);
+    
     long retVal = 1;
     
     //If n and r are less than p, then we just use the standard process
-    if (n < p && r < p) {      
-      //Computes the denominator
-      for (long i = n; i > n-r; i--)
-        retVal = (retVal * i) % p;
-
-      //Now, compute the denominator
-      for (long i = r; i > 0; i--)
-        retVal = (retVal * NumberTheory.modInverse(i, p)) % p;
+    if (n < p) {
+      if (r > n - r) r = n - r; //Fewer terms
+      
+      //Computes the numerator and the denominator
+      long num = 1, den = 1;
+      for (long i = 0; i < r; i++) {
+        num = (num * (n - i)) % p;
+        den = (den * (i + 1)) % p;
+      }
+      
       //Note: "denominator" is a figure of speech--
       //  really, I'm multiplying by the modular inverse
+      retVal = (num * NumberTheory.modInverse(den, p)) % p;
     }
     else { //We use Lucas' Theorem!
       long nCurr, rCurr; //The current digit of n and r in base p.
@@ -6,9 +6,11 @@ package math;
   * A sequence object consisting of all values of the Fibonacci sequence that fit in a long (indices 0-92).
   * <p>
   * Beyond the 93rd index, one cannot store the values in a long.  Uses a 93-element array as a memo for computation.
+  * For larger indices, see {@link NumberTheory#fibonacci(long, long)} (modulo m) and
+  * {@link NumberTheory#fibonacci(int)} (exact).
   */
 public class FibonacciSequence extends Sequence<Long> {
-  private long[] memo = new long[93];
+  private final long[] memo = new long[93];
   
   public static void main(String[] args) {
     Sequence<Long> mySeq = new FibonacciSequence();
@@ -25,27 +27,44 @@ public class FibonacciSequence extends Sequence<Long> {
   public FibonacciSequence() {
     super(0, 92); //Only defined on 0 to 92.
     
+    //Filled up front, so any index can be looked up directly
     memo[1] = 1;
+    for (int i = 2; i < memo.length; i++) memo[i] = memo[i-1] + memo[i-2];
   }
   
   /**
-    * Uses memoization to compute the n-th Fibonacci number
+    * Looks up the n-th Fibonacci number in the memo
     * @param n the index
     * @return the n-th Fibonacci number
     */
   @Override
   public Long get(long n) throws IllegalArgumentException {
-    int i = (int) n; //Don't need a long index
-    
-    if (i < getStartIndex())
+    return getLong(n);
+  }
+  
+  @Override
+  public long getLong(long n) throws IllegalArgumentException {
+    if (n < getStartIndex())
       throw new IllegalArgumentException("The Fibonacci sequence is only defined for non-negative integer indices.");
-    else if (i > getStopIndex())
+    else if (n > getStopIndex())
       throw new IllegalArgumentException("The value of fib(i) would overflow a long with the provided value of i.");
-    else if (i == 0)
-      return 0L;
-    else if (memo[i] == 0) //If we haven't computed the values yet
-      memo[i] = memo[i-1] + memo[i-2];
-      
-    return memo[i];
+    
+    return memo[(int) n]; //Don't need a long index
+  }
+  
+  @Override
+  public void fill(long from, long[] out) {
+    if (from < getStartIndex() || from + out.length - 1 > getStopIndex())
+      throw new IllegalArgumentException("The Fibonacci sequence is only stored for indices 0 to 92.");
+    
+    System.arraycopy(memo, (int) from, out, 0, out.length);
+  }
+  
+  /**
+    * @return true; the memo is filled in the constructor and never changes
+    */
+  @Override
+  public boolean isIndependent() {
+    return true;
   }
 }
\ No newline at end of file
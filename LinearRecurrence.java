@@ -0,0 +1,257 @@
+package math;
+
+import java.util.Arrays;
+
+import math.algebra.LongField;
+
+/**
+  * A linear recurrence modulo m, \(a_n = c_1 a_{n-1} + c_2 a_{n-2} + \cdots + c_d a_{n-d}\), as a {@link Sequence}.
+  * <p>
+  * Any single term is found with Kitamasa's method: \(a_n = \sum_i r_i a_i\), where \(r(x) = x^n\) modulo the
+  * characteristic polynomial \(x^d - c_1 x^{d-1} - \cdots - c_d\).  That power is taken by repeated squaring of
+  * polynomials of degree below d, so a term costs \(\mathcal{O}(d^2 \lg n)\) rather than the
+  * \(\mathcal{O}(d^3 \lg n)\) of a companion matrix power.
+  * <p>
+  * Iteration is cheaper still: the last d terms are kept, and a request a little past them is stepped to directly.
+  * That cache makes instances unsafe to share between threads, so streams over them are never split.
+  * <p>
+  * Given enough terms of a sequence modulo a prime, {@link #fromTerms(long[], long)} finds the shortest recurrence
+  * that generates them, with the Berlekamp-Massey algorithm.
+  */
+public class LinearRecurrence extends Sequence<Long> {
+  private final long m;
+  private final long[] c;     //c[i] is the coefficient of a_(n-1-i)
+  private final long[] init;  //a_0 .. a_(d-1)
+
+  //The d terms ending at windowEnd; window[k mod d] holds a_k
+  private final long[] window;
+  private long windowEnd;
+
+  /**
+    * @param coefficients \(c_1, \ldots, c_d\)
+    * @param initial \(a_0, \ldots, a_{d-1}\)
+    * @param m the modulus; positive
+    */
+  public LinearRecurrence(long[] coefficients, long[] initial, long m) {
+    super(0);
+    if (m < 1)
+      throw new IllegalArgumentException("Modulus must be positive: " + m);
+    if (coefficients.length != initial.length)
+      throw new IllegalArgumentException("A recurrence of order " + coefficients.length + " needs as many initial terms, not " + initial.length);
+
+    this.m = m;
+    this.c = new long[coefficients.length];
+    this.init = new long[initial.length];
+    for (int i = 0; i < c.length; i++) {
+      c[i] = Math.floorMod(coefficients[i], m);
+      init[i] = Math.floorMod(initial[i], m);
+    }
+
+    this.window = init.clone();
+    this.windowEnd = c.length - 1;
+  }
+
+  /**
+    * Finds the shortest linear recurrence that generates the given terms, with the Berlekamp-Massey algorithm.  For
+    * a recurrence of order d, \(2d\) terms are enough to pin it down.
+    * @param terms \(a_0, a_1, \ldots\), modulo p
+    * @param p the modulus; assumed to be prime (undefined behavior if not)
+    * @return a recurrence that agrees with every given term
+    */
+  public static LinearRecurrence fromTerms(long[] terms, long p) {
+    LongField field = new LongField(p);
+    long[] s = new long[terms.length];
+    for (int i = 0; i < s.length; i++) s[i] = field.normalize(terms[i]);
+
+    long[] conn = connectionPolynomial(s, field);
+    int d = conn.length - 1;
+    long[] coefficients = new long[d];
+    for (int i = 0; i < d; i++) coefficients[i] = field.additiveInverseOf(conn[i+1]);
+
+    long[] initial = new long[d];
+    System.arraycopy(s, 0, initial, 0, Math.min(d, s.length));
+    return new LinearRecurrence(coefficients, initial, p);
+  }
+
+  /**
+    * The Berlekamp-Massey algorithm: the shortest \(C = (1, c_1, \ldots, c_L)\) with
+    * \(\sum_{j=0}^{L} c_j s_{i-j} = 0\) for every \(i\) from L to the end of s.
+    * @param s the terms, as residues in the field
+    * @return the connection polynomial, lowest degree first
+    */
+  static long[] connectionPolynomial(long[] s, LongField field) {
+    long[] conn = new long[s.length + 1], b = new long[s.length + 1];
+    conn[0] = b[0] = 1;
+    int len = 0, bLen = 0, shift = 1;
+    long lastDiscrepancy = 1;
+
+    for (int n = 0; n < s.length; n++) {
+      long d = s[n];
+      for (int j = 1; j <= len; j++) d = field.add(d, field.multiply(conn[j], s[n-j]));
+
+      if (d == 0) {
+        shift++;
+        continue;
+      }
+
+      //C(x) -= (d / lastDiscrepancy) x^shift B(x)
+      long coef = field.additiveInverseOf(field.divide(d, lastDiscrepancy));
+      long[] old = (2 * len <= n) ? conn.clone() : null;
+      for (int j = 0; j <= bLen; j++) conn[j + shift] = field.add(conn[j + shift], field.multiply(coef, b[j]));
+
+      if (old != null) {
+        bLen = len;
+        len = n + 1 - len;
+        b = old;
+        lastDiscrepancy = d;
+        shift = 1;
+      }
+      else {
+        shift++;
+      }
+    }
+
+    return Arrays.copyOf(conn, len + 1);
+  }
+
+  /**
+    * @return the order d of the recurrence
+    */
+  public int order() {
+    return c.length;
+  }
+
+  /**
+    * @return the modulus
+    */
+  public long modulus() {
+    return m;
+  }
+
+  /**
+    * @return a copy of \(c_1, \ldots, c_d\)
+    */
+  public long[] coefficients() {
+    return c.clone();
+  }
+
+  /**
+    * @param n the index; non-negative
+    * @return \(a_n \bmod m\)
+    */
+  public long term(long n) {
+    if (n < 0)
+      throw new IllegalArgumentException("Index must be non-negative: " + n);
+
+    int d = c.length;
+    if (d == 0) return 0;
+    if (n < d) return init[(int) n];
+
+    //Within or just past the window, step; otherwise jump with Kitamasa's method
+    if (n <= windowEnd && n > windowEnd - d) return window[(int) (n % d)];
+    if (n < windowEnd || n - windowEnd > 16L * d) jump(n - d + 1);
+    while (windowEnd < n) step();
+
+    return window[(int) (n % d)];
+  }
+
+  /**
+    * @return \(a_n \bmod m\); see {@link #term(long)}
+    */
+  @Override
+  public Long get(long n) {
+    return term(n);
+  }
+
+  @Override
+  public long getLong(long n) {
+    return term(n);
+  }
+
+  /**
+    * Jumps to the first term, then steps from each term to the next.
+    */
+  @Override
+  public void fill(long from, long[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = term(from + i);
+  }
+
+  //Appends the next term to the window
+  private void step() {
+    int d = c.length;
+    long next = 0;
+    for (int i = 0; i < d; i++) next = addMod(next, mulMod(c[i], window[(int) ((windowEnd - i) % d)]));
+
+    windowEnd++;
+    window[(int) (windowEnd % d)] = next;
+  }
+
+  //Refills the window with the d terms starting at a_start, with Kitamasa's method
+  private void jump(long start) {
+    int d = c.length;
+    long[] r = powerOfX(start);
+
+    for (int k = 0; k < d; k++) {
+      long t = 0;
+      for (int i = 0; i < d; i++) t = addMod(t, mulMod(r[i], init[i]));
+      window[(int) ((start + k) % d)] = t;
+      r = timesX(r);
+    }
+
+    windowEnd = start + d - 1;
+  }
+
+  //x^e modulo the characteristic polynomial, by squaring from the top bit down
+  private long[] powerOfX(long e) {
+    long[] r = new long[c.length];
+    r[0] = 1 % m;
+
+    for (int bit = 63 - Long.numberOfLeadingZeros(e); bit >= 0; bit--) {
+      r = square(r);
+      if (((e >>> bit) & 1) == 1) r = timesX(r);
+    }
+
+    return r;
+  }
+
+  //r(x)^2 modulo the characteristic polynomial
+  private long[] square(long[] r) {
+    int d = c.length;
+    long[] prod = new long[2 * d - 1];
+    for (int i = 0; i < d; i++) {
+      if (r[i] == 0) continue;
+      for (int j = 0; j < d; j++) prod[i + j] = addMod(prod[i + j], mulMod(r[i], r[j]));
+    }
+
+    //x^k = c_1 x^(k-1) + ... + c_d x^(k-d), from the top down
+    for (int k = 2 * d - 2; k >= d; k--) {
+      long t = prod[k];
+      if (t == 0) continue;
+      for (int i = 0; i < d; i++) prod[k - 1 - i] = addMod(prod[k - 1 - i], mulMod(t, c[i]));
+    }
+
+    long[] retVal = new long[d];
+    System.arraycopy(prod, 0, retVal, 0, d);
+    return retVal;
+  }
+
+  //r(x) x modulo the characteristic polynomial
+  private long[] timesX(long[] r) {
+    int d = c.length;
+    long top = r[d - 1];
+
+    long[] retVal = new long[d];
+    for (int i = d - 1; i > 0; i--) retVal[i] = addMod(r[i - 1], mulMod(top, c[d - 1 - i]));
+    retVal[0] = mulMod(top, c[d - 1]);
+    return retVal;
+  }
+
+  private long mulMod(long a, long b) {
+    return (m <= (1L << 31)) ? a * b % m : NumberTheory.mulMod(a, b, m);
+  }
+
+  private long addMod(long a, long b) {
+    long s = a - (m - b);
+    return (s < 0) ? s + m : s;
+  }
+}
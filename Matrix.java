@@ -1,9 +1,278 @@
 package math;
 
+import java.util.*;
+
+import math.algebra.Field;
+
+/**
+  * A dense matrix with entries from an arbitrary {@link Field}.
+  * <p>
+  * Since a {@code Field} can test for its identities but not produce them, the zero and one of the field are passed
+  * in alongside it.  Row reduction ({@link #rank()}, {@link #determinant()}, {@link #inverse()}, {@link #solve})
+  * is Gaussian elimination, choosing the first nonzero pivot, so it's exact over any field.
+  * <p>
+  * Every operation goes through the field's boxed {@link math.algebra.GroupOperation}s.  For the integers modulo a
+  * prime, {@link ModularMatrix} stores primitive longs and is much faster.
+  */
 public class Matrix<E> {
-  private E[][] m;
-  
-  public Matrix(E[][] array) {
-    m = Arrays.deepcopy(array);
+  private final Field<E> field;
+  private final E zero, one;
+  private final int rows, cols;
+  private final Object[][] m; //Holds E's; generic arrays can't be created directly
+
+  /**
+    * Creates a matrix from a copy of the given entries.
+    * @param field the field of the entries
+    * @param zero the additive identity of the field
+    * @param one the multiplicative identity of the field
+    * @param array a rectangular array of entries, indexed [row][column]
+    */
+  public Matrix(Field<E> field, E zero, E one, E[][] array) {
+    this(field, zero, one, array.length, (array.length == 0) ? 0 : array[0].length);
+
+    for (int i = 0; i < rows; i++) {
+      if (array[i].length != cols)
+        throw new IllegalArgumentException("Row " + i + " has " + array[i].length + " entries, not " + cols);
+      System.arraycopy(array[i], 0, m[i], 0, cols);
+    }
+  }
+
+  //A zero matrix
+  private Matrix(Field<E> field, E zero, E one, int rows, int cols) {
+    if (rows < 0 || cols < 0)
+      throw new IllegalArgumentException("Matrix dimensions must be non-negative: " + rows + "x" + cols);
+
+    this.field = field;
+    this.zero = zero;
+    this.one = one;
+    this.rows = rows;
+    this.cols = cols;
+    this.m = new Object[rows][cols];
+    for (Object[] row : m) Arrays.fill(row, zero);
+  }
+
+  /**
+    * @return the n by n identity matrix over the given field
+    */
+  public static <E> Matrix<E> identity(Field<E> field, E zero, E one, int n) {
+    Matrix<E> retVal = new Matrix<E>(field, zero, one, n, n);
+    for (int i = 0; i < n; i++) retVal.m[i][i] = one;
+    return retVal;
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public int columns() {
+    return cols;
+  }
+
+  @SuppressWarnings("unchecked")
+  public E get(int i, int j) {
+    return (E) m[i][j];
+  }
+
+  public void set(int i, int j, E value) {
+    m[i][j] = value;
+  }
+
+  /**
+    * @return this plus other
+    */
+  public Matrix<E> add(Matrix<E> other) {
+    if (rows != other.rows || cols != other.cols)
+      throw new IllegalArgumentException("Can't add " + rows + "x" + cols + " to " + other.rows + "x" + other.cols);
+
+    Matrix<E> retVal = new Matrix<E>(field, zero, one, rows, cols);
+    for (int i = 0; i < rows; i++)
+      for (int j = 0; j < cols; j++) retVal.m[i][j] = field.add(get(i, j), other.get(i, j));
+
+    return retVal;
+  }
+
+  /**
+    * @return this times other
+    */
+  public Matrix<E> multiply(Matrix<E> other) {
+    if (cols != other.rows)
+      throw new IllegalArgumentException("Can't multiply " + rows + "x" + cols + " by " + other.rows + "x" + other.cols);
+
+    //i-k-j order, skipping zeros, so the inner loop runs along rows
+    Matrix<E> retVal = new Matrix<E>(field, zero, one, rows, other.cols);
+    for (int i = 0; i < rows; i++) {
+      for (int k = 0; k < cols; k++) {
+        E aik = get(i, k);
+        if (field.isAdditiveIdentity(aik)) continue;
+
+        for (int j = 0; j < other.cols; j++)
+          retVal.m[i][j] = field.add(retVal.get(i, j), field.multiply(aik, other.get(k, j)));
+      }
+    }
+
+    return retVal;
+  }
+
+  /**
+    * Raises a square matrix to a power by repeated squaring.
+    * @param e the exponent; non-negative
+    * @return this matrix to the e
+    */
+  public Matrix<E> pow(long e) {
+    checkSquare();
+    if (e < 0)
+      throw new IllegalArgumentException("Exponent must be non-negative: " + e);
+
+    Matrix<E> retVal = identity(field, zero, one, rows), base = this;
+    for (; e > 0; e >>= 1) {
+      if ((e & 1) == 1) retVal = retVal.multiply(base);
+      if (e > 1) base = base.multiply(base);
+    }
+
+    return retVal;
+  }
+
+  /**
+    * @return the transpose of this matrix
+    */
+  public Matrix<E> transpose() {
+    Matrix<E> retVal = new Matrix<E>(field, zero, one, cols, rows);
+    for (int i = 0; i < rows; i++)
+      for (int j = 0; j < cols; j++) retVal.m[j][i] = m[i][j];
+
+    return retVal;
+  }
+
+  /**
+    * @return the rank of this matrix
+    */
+  public int rank() {
+    return reduce(copyRows(0), cols);
+  }
+
+  /**
+    * @return the determinant of this square matrix
+    */
+  public E determinant() {
+    checkSquare();
+
+    Object[][] a = copyRows(0);
+    E retVal = one;
+    for (int c = 0; c < rows; c++) {
+      int pivot = c;
+      while (pivot < rows && field.isAdditiveIdentity(get(a, pivot, c))) pivot++;
+      if (pivot == rows) return zero;
+
+      if (pivot != c) {
+        Object[] tmp = a[pivot]; a[pivot] = a[c]; a[c] = tmp;
+        retVal = field.additiveInverseOf(retVal);
+      }
+
+      E p = get(a, c, c);
+      retVal = field.multiply(retVal, p);
+      for (int i = c + 1; i < rows; i++) {
+        E factor = field.divide(get(a, i, c), p);
+        for (int j = c; j < cols; j++)
+          a[i][j] = field.subtract(get(a, i, j), field.multiply(factor, get(a, c, j)));
+      }
+    }
+
+    return retVal;
+  }
+
+  /**
+    * @return the inverse of this square matrix
+    * @throws ArithmeticException if the matrix is singular
+    */
+  public Matrix<E> inverse() {
+    checkSquare();
+
+    //Reduce [A | I]; when A becomes I, the right half is the inverse
+    Object[][] a = copyRows(cols);
+    for (int i = 0; i < rows; i++) a[i][cols + i] = one;
+
+    if (reduce(a, cols) < rows)
+      throw new ArithmeticException("Matrix is singular");
+
+    Matrix<E> retVal = new Matrix<E>(field, zero, one, rows, cols);
+    for (int i = 0; i < rows; i++) System.arraycopy(a[i], cols, retVal.m[i], 0, cols);
+    return retVal;
+  }
+
+  /**
+    * Solves \(Ax = b\) for a square, nonsingular A.
+    * @param b a vector with one entry per row
+    * @param x receives the unique solution
+    * @throws ArithmeticException if the matrix is singular
+    */
+  public void solve(E[] b, E[] x) {
+    checkSquare();
+    if (b.length != rows || x.length != rows)
+      throw new IllegalArgumentException("Vectors need " + rows + " entries");
+
+    Object[][] a = copyRows(1);
+    for (int i = 0; i < rows; i++) a[i][cols] = b[i];
+
+    if (reduce(a, cols) < rows)
+      throw new ArithmeticException("Matrix is singular");
+
+    for (int i = 0; i < rows; i++) x[i] = get(a, i, cols);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (Object[] row : m) sb.append(Arrays.toString(row)).append('\n');
+    return sb.toString();
+  }
+
+  //Copies the entries, with extra columns of zeros on the right
+  private Object[][] copyRows(int extra) {
+    Object[][] retVal = new Object[rows][cols + extra];
+    for (int i = 0; i < rows; i++) {
+      System.arraycopy(m[i], 0, retVal[i], 0, cols);
+      Arrays.fill(retVal[i], cols, cols + extra, zero);
+    }
+
+    return retVal;
+  }
+
+  @SuppressWarnings("unchecked")
+  private E get(Object[][] a, int i, int j) {
+    return (E) a[i][j];
+  }
+
+  //Gauss-Jordan elimination of a over its first n columns, in place; returns their rank
+  private int reduce(Object[][] a, int n) {
+    int width = (a.length == 0) ? 0 : a[0].length;
+    int rank = 0;
+
+    for (int c = 0; c < n && rank < a.length; c++) {
+      int pivot = rank;
+      while (pivot < a.length && field.isAdditiveIdentity(get(a, pivot, c))) pivot++;
+      if (pivot == a.length) continue;
+
+      Object[] tmp = a[pivot]; a[pivot] = a[rank]; a[rank] = tmp;
+
+      E inv = field.multiplicativeInverseOf(get(a, rank, c));
+      for (int j = c; j < width; j++) a[rank][j] = field.multiply(inv, get(a, rank, j));
+
+      for (int i = 0; i < a.length; i++) {
+        E factor = get(a, i, c);
+        if (i == rank || field.isAdditiveIdentity(factor)) continue;
+
+        for (int j = c; j < width; j++)
+          a[i][j] = field.subtract(get(a, i, j), field.multiply(factor, get(a, rank, j)));
+      }
+
+      rank++;
+    }
+
+    return rank;
+  }
+
+  private void checkSquare() {
+    if (rows != cols)
+      throw new IllegalArgumentException("Matrix isn't square: " + rows + "x" + cols);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,172 @@
+package math;
+
+/**
+  * Fast modular arithmetic for a fixed odd modulus, using Montgomery form.
+  * <p>
+  * With \(R = 2^{64}\), the value \(a\) is represented by \(aR \bmod m\).  In that form a modular product needs
+  * two 64x64-bit multiplies ({@link Math#multiplyHigh(long, long)} gives the high halves) and no division.
+  * Converting in and out costs one extra multiplication each, so this pays off whenever several operations
+  * are done under the same modulus: exponentiation, Miller-Rabin, Pollard's rho, and so on.
+  * <p>
+  * Works for every odd modulus \(1 \lt m \lt 2^{63}\).  Methods named for plain arithmetic ({@link #mulMod},
+  * {@link #modPow}) take and return ordinary residues; the rest work on Montgomery-form values.
+  */
+public final class Montgomery {
+  private final long m;    //The modulus
+  private final long mInv; //m^(-1) mod 2^64
+  private final long one;  //R mod m, i.e., 1 in Montgomery form
+  private final long r2;   //R^2 mod m, for converting into Montgomery form
+
+  /**
+    * Creates a context for arithmetic modulo m.
+    * @param m the modulus; odd and greater than 1
+    */
+  public Montgomery(long m) {
+    if (m <= 1 || (m & 1) == 0)
+      throw new IllegalArgumentException("Montgomery form needs an odd modulus greater than 1: " + m);
+
+    this.m = m;
+
+    //Newton's iteration doubles the number of correct low bits each time; m is its own inverse mod 8
+    long inv = m;
+    for (int i = 0; i < 5; i++) inv *= 2 - m * inv;
+    this.mInv = inv;
+
+    long r = Long.remainderUnsigned(-1L, m) + 1; //(2^64 - 1) mod m, plus one
+    this.one = (r == m) ? 0 : r;
+    this.r2 = NumberTheory.mulMod(one, one, m);
+  }
+
+  /**
+    * @return the modulus
+    */
+  public long modulus() {
+    return m;
+  }
+
+  /**
+    * @return 1, in Montgomery form
+    */
+  public long one() {
+    return one;
+  }
+
+  /**
+    * @param a any long
+    * @return \(aR \bmod m\), the Montgomery form of a
+    */
+  public long toMontgomery(long a) {
+    if (a < 0 || a >= m) a = Math.floorMod(a, m);
+    return reduce(Math.multiplyHigh(a, r2), a * r2);
+  }
+
+  /**
+    * @param x a value in Montgomery form
+    * @return the ordinary residue that x represents
+    */
+  public long fromMontgomery(long x) {
+    return reduce(0, x);
+  }
+
+  /**
+    * @param x a value in Montgomery form
+    * @param y a value in Montgomery form
+    * @return \(xy\), in Montgomery form
+    */
+  public long multiply(long x, long y) {
+    return reduce(Math.multiplyHigh(x, y), x * y);
+  }
+
+  /**
+    * @param x a value in Montgomery form
+    * @return \(x^2\), in Montgomery form
+    */
+  public long square(long x) {
+    return reduce(Math.multiplyHigh(x, x), x * x);
+  }
+
+  /**
+    * Addition is the same in either form.
+    * @param x a residue in \([0, m)\)
+    * @param y a residue in \([0, m)\)
+    * @return \(x + y \bmod m\)
+    */
+  public long add(long x, long y) {
+    long s = x + y - m; //In (-m, m), and can't overflow since m < 2^63
+    return (s < 0) ? s + m : s;
+  }
+
+  /**
+    * Subtraction is the same in either form.
+    * @param x a residue in \([0, m)\)
+    * @param y a residue in \([0, m)\)
+    * @return \(x - y \bmod m\)
+    */
+  public long subtract(long x, long y) {
+    long d = x - y;
+    return (d < 0) ? d + m : d;
+  }
+
+  /**
+    * @param x a value in Montgomery form
+    * @param e the exponent; non-negative
+    * @return \(x^e\), in Montgomery form
+    */
+  public long pow(long x, long e) {
+    long retVal = one;
+
+    for (; e > 0; e >>= 1) {
+      if ((e & 1) == 1) retVal = multiply(retVal, x);
+      x = square(x);
+    }
+
+    return retVal;
+  }
+
+  /**
+    * @param a any long
+    * @param b any long
+    * @return \(ab \bmod m\), as an ordinary residue
+    */
+  public long mulMod(long a, long b) {
+    if (a < 0 || a >= m) a = Math.floorMod(a, m);
+    if (b < 0 || b >= m) b = Math.floorMod(b, m);
+
+    //reduce(ab) = ab/R, and one more product with R^2 brings it back to ab
+    long t = reduce(Math.multiplyHigh(a, b), a * b);
+    return reduce(Math.multiplyHigh(t, r2), t * r2);
+  }
+
+  /**
+    * Reduces a 128-bit value, such as a sum of products accumulated without reduction.
+    * @param hi the high word; \(0 \le hi \lt m\)
+    * @param lo the low word, as unsigned
+    * @return \((2^{64} hi + lo) \bmod m\), as an ordinary residue
+    */
+  public long remainder(long hi, long lo) {
+    long t = reduce(hi, lo); //T/R; multiplying by R^2 in Montgomery form brings it back to T
+    return reduce(Math.multiplyHigh(t, r2), t * r2);
+  }
+
+  /**
+    * @param a the base
+    * @param e the exponent; non-negative
+    * @return \(a^e \bmod m\), as an ordinary residue
+    */
+  public long modPow(long a, long e) {
+    return fromMontgomery(pow(toMontgomery(a), e));
+  }
+
+  /**
+    * Montgomery reduction: computes \(T R^{-1} \bmod m\) for \(T = 2^{64} hi + lo \lt mR\).
+    * <p>
+    * With \(u = lo \cdot m^{-1} \bmod 2^{64}\), the low words of T and \(um\) agree, so
+    * \((T - um)/R = hi - \lfloor um/R \rfloor\) exactly, and that lies in \((-m, m)\).
+    */
+  private long reduce(long hi, long lo) {
+    long u = lo * mInv;
+    long umHi = Math.multiplyHigh(u, m) + ((u >> 63) & m); //Unsigned high word of u*m
+    long retVal = hi - umHi;
+    return (retVal < 0) ? retVal + m : retVal;
+  }
+}
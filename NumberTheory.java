@@ -1,7 +1,15 @@
 package math;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.IntBuffer;
+import java.nio.file.Paths;
 import java.util.*;
 
+import math.algebra.IntField;
+import math.algebra.Polynomial;
+
 public class NumberTheory {  
   public static void main(String[] args) {
     System.out.println(divisorFunction(0, Integer.parseInt(args[0])));
@@ -13,70 +21,89 @@ public class NumberTheory {
     */
   public final static double phi = (1 + Math.sqrt(5))/2;
   
-  //My variables for caching the result of the function below
-  private static ArrayList<Integer> primeList;
-  private static int lastPrimeUpperLimit = -1;
+  /**
+    * The system property naming a {@link SieveFile} to load the shared prime table from, so that it doesn't have
+    * to be sieved again in every JVM.  If it's unset, the table starts empty.
+    */
+  public static final String SIEVE_FILE_PROPERTY = "math.sieveFile";
+  
+  //Shared cache of small primes, used by the functions below
+  private static final PrimeTable primeTable = loadPrimeTable();
+  
+  private static PrimeTable loadPrimeTable() {
+    String path = System.getProperty(SIEVE_FILE_PROPERTY);
+    if (path == null) return new PrimeTable();
+    
+    try {
+      return SieveFile.open(Paths.get(path)).primeTable();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Can't load the prime table from " + path, e);
+    }
+  }
+  
+  /**
+    * @return the shared, thread-safe table of small primes used by this class
+    */
+  public static PrimeTable getPrimeTable() {
+    return primeTable;
+  }
+  
   /**
     *  Uses the Sieve of Eratosthenes to find the primes less than or equal to a limit.  Runs in \(\mathcal{O}(N\lg(\lg(N)))\) time.
     *  <p>
-    *  Result is stored in a private static field for fast additional calls.
+    *  Result is stored in a shared {@link PrimeTable} for fast additional calls.
+    *  See {@link PrimeSieve} for primitive results and for limits too large to hold in a list.
     *  @param N Searches for primes less than or equal to this limit
     *  @return An ArrayList&lt;Integer&gt; containing retrieved primes (in order).
-    *  Runs an implementation of the Sieve of Eratosthenes.
+    *  Runs the segmented sieve in {@link PrimeSieve}.
     */
   public static ArrayList<Integer> getPrimes(int N) {
-    ArrayList<Integer> retVal = new ArrayList<Integer>(); //Holds the primes
-    
-    //If I've already called this once this run, reuse the data.
-    if (N <= lastPrimeUpperLimit) {
-      int primeListSize = primeList.size();
-      for (int i = 0; i < primeListSize && primeList.get(i) < N; i++)
-      retVal.add(primeList.get(i));
-      
-      return retVal;
-    }
-    
-    //Make sure that stuff is initialized!
-    if (primeList == null) {
-      primeList = new ArrayList<Integer>();
-      primeList.add(2); //Taking care of that even prime...
-    }
-    
-    boolean[] sieve = new boolean[(N-1)/2]; //Primes are false, composites are true
+    //Too big to cache; just sieve them
+    IntBuffer primes = primeTable.canHold(N) ? primeTable.primes(N) : IntBuffer.wrap(PrimeSieve.primes(N));
+    ArrayList<Integer> retVal = new ArrayList<Integer>(primes.remaining()); //Holds the primes
     
-    retVal.add(2); //Add that pesky even prime.
-    
-    for (int i = 0; i < sieve.length; i++) {
-      //Skip the iterations if this index is composite...
-      if (sieve[i]) continue;
-      
-      //This one is prime!  Add it to the lists...
-      retVal.add(2*i + 3);
-      if (2*i+3 > lastPrimeUpperLimit) primeList.add(2*i+3);
-      
-      //Mark off all N/(2*p) multiples, where p is the current prime.  
-      //(We leave off the even multiples, hence the 2)
-      for (int j = 3*i+3; j < sieve.length; j+=2*i+3) sieve[j] = true; //TODO: Start at the square of p!
-    }
-    
-    //Cache your work!
-    lastPrimeUpperLimit = N;
+    while (primes.hasRemaining())
+      retVal.add(primes.get());
     
     return retVal;
   }
   
+  /**
+    *  The largest argument to {@link #primeCount(long)}, \(2^{56}\); past about \(2^{57}\), the bitset of primes up
+    *  to \(x^{2/3}\) would not fit in an array.
+    */
+  public static final long PRIME_COUNT_LIMIT = 1L << 56;
+  
+  /**
+    *  Counts the primes less than or equal to x, without listing them.
+    *  <p>
+    *  Uses the Meissel-Lehmer method, which takes about \(\mathcal{O}(x^{2/3})\) time and memory: \(\pi(10^{12})\)
+    *  needs a sieve only up to \(10^8\).  The sieve and the main sums run in parallel on the common pool.  The sieve
+    *  is a bitset of about \(x^{2/3}/16\) bytes, plus half as much again for running counts of its bits: 9 MB at
+    *  \(10^{12}\), 940 MB at \(10^{15}\), and 16 GB at {@link #PRIME_COUNT_LIMIT}.  The bitset's length caps x
+    *  there, well below {@link PrimeSieve#MAX_LIMIT}.
+    *  @param x the (inclusive) upper limit; at most {@link #PRIME_COUNT_LIMIT}
+    *  @return \(\pi(x)\)
+    *  @see PrimeTable#primeCount(long)
+    */
+  public static long primeCount(long x) {
+    return PrimeCounter.count(x);
+  }
+  
   /**
     *  Factors a number using trial division, testing only the primes under the square root of the input
     *  @param N The integer to factor
     *  @return a list of factors, accounting for multiplicity.
+    *  @see SmallestPrimeFactorTable#factor(int, int[])
     */
   public static ArrayList<Integer> getFactors(int N) {
     int primeLimit = (int)(Math.sqrt(N)); //Only one prime factor can be greater than the sqrt of N&1
-    ArrayList<Integer> primes = getPrimes(primeLimit); //Holds all possible prime factors
+    IntBuffer primes = primeTable.primes(primeLimit); //Holds all possible prime factors
     ArrayList<Integer> factors = new ArrayList<Integer>(); //Holds the actual factors
     
     int testPrime = 0;
-    for (int i = 0; N > 1 && i < primes.size(); i++) {
+    for (int i = 0; N > 1 && i < primes.limit(); i++) {
       testPrime = primes.get(i);
       
       //Divide out all counts of the current prime
@@ -93,6 +120,120 @@ public class NumberTheory {
     return factors;
   }
   
+  /**
+    *  Factors a 64-bit integer.
+    *  <p>
+    *  Small factors are found by trial division; whatever is left is certified with {@link #isPrime(long)} or split
+    *  with Pollard's rho (in Brent's variant).
+    *  @param N The integer to factor; positive
+    *  @return a list of factors in non-decreasing order, accounting for multiplicity.
+    */
+  public static ArrayList<Long> getFactors(long N) {
+    long[] buf = new long[64];
+    int ct = getFactors(N, buf);
+    
+    ArrayList<Long> factors = new ArrayList<Long>(ct);
+    for (int i = 0; i < ct; i++) factors.add(buf[i]);
+    
+    return factors;
+  }
+  
+  //Trial division bound for getFactors(long, long[]); every prime below this is tried first
+  private static final int TRIAL_DIVISION_LIMIT = 1 << 10;
+  
+  /**
+    *  Factors a 64-bit integer into a caller-supplied buffer, without allocating.
+    *  <p>
+    *  A positive long has at most 62 prime factors, so a 64-element buffer is always large enough.  The tail of
+    *  the buffer is used as a stack of composites still to be split.
+    *  @param N The integer to factor; positive
+    *  @param factors receives the factors in non-decreasing order, accounting for multiplicity; length at least 64
+    *  @return the number of factors written
+    */
+  public static int getFactors(long N, long[] factors) {
+    if (N < 1) throw new IllegalArgumentException("Can only factor positive integers: " + N);
+    if (factors.length < 64) throw new IllegalArgumentException("Factor buffer needs room for 64 values");
+    
+    int ct = 0;
+    
+    //Twos, then odd primes by trial division
+    for (int tz = Long.numberOfTrailingZeros(N); tz > 0; tz--) factors[ct++] = 2;
+    N >>= Long.numberOfTrailingZeros(N);
+    
+    IntBuffer primes = primeTable.primes(TRIAL_DIVISION_LIMIT);
+    for (int i = 1; i < primes.limit(); i++) {
+      long p = primes.get(i);
+      if (p * p > N) break;
+      
+      while (N % p == 0) {
+        factors[ct++] = p;
+        N /= p;
+      }
+    }
+    
+    //Every remaining factor is at least TRIAL_DIVISION_LIMIT; split them with rho
+    int top = factors.length;
+    if (N > 1) factors[--top] = N;
+    
+    while (top < factors.length) {
+      long n = factors[top++];
+      
+      if ((long) TRIAL_DIVISION_LIMIT * TRIAL_DIVISION_LIMIT > n || isPrime(n)) {
+        factors[ct++] = n;
+      }
+      else {
+        long d = pollardBrent(n);
+        factors[--top] = d;
+        factors[--top] = n / d;
+      }
+    }
+    
+    Arrays.sort(factors, 0, ct);
+    return ct;
+  }
+  
+  /**
+    * Finds a non-trivial factor of an odd composite using Brent's variant of Pollard's rho.
+    * <p>
+    * Iterates \(x \mapsto x^2 + c\), multiplying batches of differences together so that only one gcd is needed
+    * per batch.  If a batch overshoots to n, it is replayed one step at a time; if the whole cycle collapses, c is
+    * changed and we start again.
+    */
+  private static long pollardBrent(long n) {
+    final int m = 128; //Batch size
+    
+    //Everything stays in Montgomery form: c is just a different constant there, and gcd(qR, n) = gcd(q, n)
+    Montgomery mont = new Montgomery(n);
+    
+    for (long c = 1; ; c++) {
+      long y = 2, x = y, ys = y, q = mont.one(), g = 1;
+      
+      for (long r = 1; g == 1; r <<= 1) {
+        x = y;
+        for (long i = 0; i < r; i++) y = mont.add(mont.square(y), c);
+        
+        for (long k = 0; k < r && g == 1; k += m) {
+          ys = y;
+          for (long i = 0; i < Math.min(m, r - k); i++) {
+            y = mont.add(mont.square(y), c);
+            q = mont.multiply(q, mont.subtract(x, y));
+          }
+          g = gcd(q, n);
+        }
+      }
+      
+      //Overshot; replay the last batch one step at a time
+      if (g == n) {
+        do {
+          ys = mont.add(mont.square(ys), c);
+          g = gcd(x - ys, n);
+        } while (g == 1);
+      }
+      
+      if (g != n) return g;
+    }
+  }
+  
   /**
     * The divisor function, \(\sigma\)
     * <p>
@@ -102,6 +243,7 @@ public class NumberTheory {
     * @param x the divisor function parameter
     * @param N The integer to process
     * @return the value of the divisor function evaluated at $x, N$.
+    * @see SmallestPrimeFactorTable#divisorSigmaRange(int, int, int)
     */
   public static long divisorFunction(int x, int N) {
     Set<Integer> distinctPrimeFactors = new HashSet<Integer>(getFactors(N));
@@ -123,9 +265,11 @@ public class NumberTheory {
   
   /**
     * The number of integers between 0 and N (exclusive) that are coprime to N
+    * <p>
+    * For many values, build a {@link SmallestPrimeFactorTable} and use its {@code totient} or {@code totientRange}.
     */
   public static int totient(int N) {
-    List<Integer> primes = getFactors(N);
+    Set<Integer> primes = new HashSet<Integer>(getFactors(N)); //Each distinct prime contributes once
     int retVal = N;
     for (Integer p : primes) {
       retVal = (retVal / p) * (p-1);
@@ -141,10 +285,10 @@ public class NumberTheory {
     * @return the number of divisors of N
     */
   public static int divisorCt(int N) {
-    List<Integer> primes = getPrimes((int)Math.sqrt(N));
+    IntBuffer primes = primeTable.primes((int)Math.sqrt(N));
     int divisorCt = 1;
     
-    for (int i = 0; N > 1 && i < primes.size(); i++) {
+    for (int i = 0; N > 1 && i < primes.limit(); i++) {
       int exponent = 0;
       int currPrime = primes.get(i);
       
@@ -175,36 +319,146 @@ public class NumberTheory {
     if (args.length < 1) {
       throw new IllegalArgumentException("gcd requires at least one argument");
     }
-    else if (args.length == 1) { //GCD(a) = a
-      return args[0];
+    else if (args.length == 1) { //GCD(a) = |a|
+      return gcd(args[0], 0);
     }
-    else if (args.length == 2) { //Standard Euclidean algorithm
-      //Ensure that a >= b
-      long a = Math.max(args[0], args[1]);
-      long b = Math.min(args[0], args[1]);
+    else { //Adapted from Knuth AOCP, 4.5.2 Algorithm C 
+      long d = gcd(args[0], args[1]);
       
-      //Euclidean algorithm
-      long tmp;
-      while (b > 0) {
-        tmp = b;
-        b = a % tmp;
-        a = tmp;
+      for (int i = 2; d != 1 && i < args.length; i++) {
+        d = gcd(args[i], d);
       }
       
-      return a;
+      return d;
+    }
+  }
+  
+  /**
+    * Computes the gcd of two integers with the binary (Stein's) algorithm.
+    * <p>
+    * Uses only shifts and subtraction: common factors of two are counted with
+    * {@link Long#numberOfTrailingZeros(long)}, and then the larger odd value is repeatedly replaced by the
+    * (even) difference with its factors of two removed.  Signs are ignored, and \(\gcd(0, 0) = 0\).
+    * @param a the first integer
+    * @param b the second integer
+    * @return the (non-negative) greatest common divisor of a and b
+    * @throws ArithmeticException if the gcd is \(2^{63}\), which doesn't fit in a long
+    */
+  public static long gcd(long a, long b) {
+    a = Math.abs(a); //Long.MIN_VALUE stays put, and is 2^63 read as unsigned
+    b = Math.abs(b);
+    if (a == 0 || b == 0) {
+      long retVal = a | b;
+      if (retVal < 0) throw new ArithmeticException("gcd is 2^63");
+      return retVal;
     }
-    else { // if (args.length > 2) -- this is the Euclidean algorithm for n integers
-      //Adapted from Knuth AOCP, 4.5.2 Algorithm C 
-      long d = args[0];
+    
+    int shift = Long.numberOfTrailingZeros(a | b);
+    a >>>= Long.numberOfTrailingZeros(a);
+    
+    //Both a and b are odd (so positive) at the top of the loop
+    do {
+      b >>>= Long.numberOfTrailingZeros(b);
+      if (a > b) {
+        long t = a;
+        a = b;
+        b = t;
+      }
+      b -= a;
+    } while (b != 0);
+    
+    if (shift == 63 && a == 1) throw new ArithmeticException("gcd is 2^63");
+    return a << shift;
+  }
+  
+  /**
+    * Computes the gcd of each pair of entries, <code>out[i] = gcd(a[i], b[i])</code>.
+    * <p>
+    * The inner loop is the branch-free form of the binary algorithm (the min and absolute difference are
+    * taken with masks), so the JIT can keep the whole step in registers, and the loop has the shape the
+    * Vector API would need.  The arrays may alias.
+    * @param a the first arguments
+    * @param b the second arguments
+    * @param out receives the gcds
+    */
+  public static void gcd(long[] a, long[] b, long[] out) {
+    if (b.length < a.length || out.length < a.length)
+      throw new IllegalArgumentException("Array lengths differ");
+    
+    for (int i = 0; i < a.length; i++) {
+      long x = Math.abs(a[i]), y = Math.abs(b[i]);
+      if (x == 0 || y == 0 || ((x | y) < 0)) { //The rare cases go the slow way
+        out[i] = gcd(x, y);
+        continue;
+      }
       
-      for (int i = 1; d != 1 && i < args.length; i++) {
-        d = gcd(args[i], d);
+      int shift = Long.numberOfTrailingZeros(x | y);
+      x >>>= Long.numberOfTrailingZeros(x);
+      y >>>= Long.numberOfTrailingZeros(y);
+      
+      while (x != y) {
+        long d = y - x;
+        long m = d >> 63;     //All ones iff y < x
+        x += d & m;           //min(x, y)
+        y = (d ^ m) - m;      //|y - x|, which is even and non-zero
+        y >>>= Long.numberOfTrailingZeros(y);
       }
       
-      return d;
+      out[i] = x << shift;
     }
   }
   
+  /**
+    * Solves Bezout's identity: finds x and y with \(xa + yb = \gcd(a, b)\), without allocating.
+    * <p>
+    * This is the extended Euclidean algorithm, as in <code>bezout</code> from cpp/NumberTheory.h.  When
+    * both inputs are non-zero, the coefficients satisfy \(|x| \le |b|/g\) and \(|y| \le |a|/g\).
+    * @param a the first integer; not Long.MIN_VALUE
+    * @param b the second integer; not Long.MIN_VALUE
+    * @param xy receives x in xy[0] and y in xy[1]
+    * @return \(g = \gcd(a, b) \ge 0\)
+    */
+  public static long bezout(long a, long b, long[] xy) {
+    if (a == Long.MIN_VALUE || b == Long.MIN_VALUE)
+      throw new ArithmeticException("Bezout coefficients may overflow for Long.MIN_VALUE");
+    
+    //Invariants: r0 = s0*a + t0*b and r1 = s1*a + t1*b
+    long r0 = Math.abs(a), r1 = Math.abs(b);
+    long s0 = 1, s1 = 0;
+    long t0 = 0, t1 = 1;
+    
+    while (r1 != 0) {
+      long q = r0 / r1;
+      long tmp;
+      
+      tmp = r0 - q*r1; r0 = r1; r1 = tmp;
+      tmp = s0 - q*s1; s0 = s1; s1 = tmp;
+      tmp = t0 - q*t1; t0 = t1; t1 = tmp;
+    }
+    
+    //We worked with |a| and |b|, so fix the signs
+    xy[0] = (a < 0) ? -s0 : s0;
+    xy[1] = (b < 0) ? -t0 : t0;
+    return r0;
+  }
+  
+  /**
+    * Computes \(\lfloor\sqrt{n}\rfloor\) exactly.
+    * <p>
+    * The floating-point square root can be off by one for large longs, so the estimate is corrected.
+    * @param n a non-negative integer
+    * @return the integer square root of n
+    */
+  public static long isqrt(long n) {
+    if (n < 0) throw new IllegalArgumentException("Square root of a negative number: " + n);
+    
+    long r = Math.min((long) Math.sqrt((double) n), 3037000499L); //sqrt(Long.MAX_VALUE), so r*r can't overflow
+    while (r * r > n) r--;
+    while (r < 3037000499L && (r+1) * (r+1) <= n) r++;
+    
+    return r;
+  }
+  
   /**
     * Computes the nth triangular number.
     * <p>
@@ -242,101 +496,430 @@ public class NumberTheory {
     }
   }
 
+  /**
+    * Computes the nth Fibonacci number modulo m, for any non-negative long index.
+    * <p>
+    * Uses fast doubling: with \(a = F_k\) and \(b = F_{k+1}\), \(F_{2k} = a(2b - a)\) and
+    * \(F_{2k+1} = a^2 + b^2\).  Walking the bits of n from the top, this takes O(lg n) products.
+    * @param n the index; non-negative
+    * @param m the modulus; positive
+    * @return \(F_n \bmod m\)
+    */
+  public static long fibonacci(long n, long m) {
+    return fibonacciPair(n, m)[0];
+  }
+
+  /**
+    * Computes the nth Lucas number modulo m, for any non-negative long index, from
+    * \(L_n = 2F_{n+1} - F_n\).
+    * @param n the index; non-negative
+    * @param m the modulus; positive
+    * @return \(L_n \bmod m\)
+    */
+  public static long lucas(long n, long m) {
+    long[] f = fibonacciPair(n, m);
+    long twice = addMod(f[1], f[1], m);
+    return addMod(twice, (f[0] == 0) ? 0 : m - f[0], m);
+  }
+
+  /**
+    * Computes the nth Fibonacci number exactly.
+    * <p>
+    * Fast doubling again, rearranged so each step is three squarings, \(F_{2k+1} = a^2 + b^2\) and
+    * \(F_{2k} = (a + b)^2 - 2a^2 - b^2\).  {@link BigInteger} squares faster than it multiplies, and at these sizes
+    * it uses Karatsuba and Toom-Cook, so the whole computation costs a small multiple of one final squaring.
+    * @param n the index; non-negative
+    * @return \(F_n\)
+    */
+  public static BigInteger fibonacci(int n) {
+    return fibonacciPair(n)[0];
+  }
+
+  /**
+    * Computes the nth Lucas number exactly, from \(L_n = 2F_{n+1} - F_n\).
+    * @param n the index; non-negative
+    * @return \(L_n\)
+    */
+  public static BigInteger lucas(int n) {
+    BigInteger[] f = fibonacciPair(n);
+    return f[1].shiftLeft(1).subtract(f[0]);
+  }
+
+  //{F_n, F_(n+1)} mod m, by fast doubling
+  private static long[] fibonacciPair(long n, long m) {
+    if (n < 0)
+      throw new IllegalArgumentException("Index must be non-negative: " + n);
+    if (m < 1)
+      throw new IllegalArgumentException("Modulus must be positive: " + m);
+
+    long a = 0, b = 1 % m; //F_k, F_(k+1), starting from k = 0
+    for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+      long c = mulMod(a, addMod(addMod(b, b, m), (a == 0) ? 0 : m - a, m), m); //F_2k
+      long d = addMod(mulMod(a, a, m), mulMod(b, b, m), m);                     //F_(2k+1)
+      if (((n >>> bit) & 1) == 0) {
+        a = c; b = d;
+      }
+      else {
+        a = d; b = addMod(c, d, m);
+      }
+    }
+
+    return new long[] { a, b };
+  }
+
+  //{F_n, F_(n+1)}, by fast doubling with three squarings a step
+  private static BigInteger[] fibonacciPair(int n) {
+    if (n < 0)
+      throw new IllegalArgumentException("Index must be non-negative: " + n);
+
+    BigInteger a = BigInteger.ZERO, b = BigInteger.ONE;
+    for (int bit = 31 - Integer.numberOfLeadingZeros(n); bit >= 0; bit--) {
+      BigInteger a2 = a.multiply(a), b2 = b.multiply(b), s = a.add(b);
+      BigInteger c = s.multiply(s).subtract(a2.shiftLeft(1)).subtract(b2); //F_2k
+      BigInteger d = a2.add(b2);                                           //F_(2k+1)
+      if (((n >>> bit) & 1) == 0) {
+        a = c; b = d;
+      }
+      else {
+        a = d; b = c.add(d);
+      }
+    }
+
+    return new BigInteger[] { a, b };
+  }
+
+  //(a + b) mod m for a, b in [0, m), without overflow
+  private static long addMod(long a, long b, long m) {
+    long s = a - (m - b);
+    return (s < 0) ? s + m : s;
+  }
+
   /**
     * Computes the inverse of n modulo p using the Extended Euclidean Algorithm.
-    * Assumes that n and p are coprime; undefined behavior results if they are not.
     *
     * @param n a number coprime to p
     * @param p the modulus
     * @return the inverse of n modulo p
+    * @throws ArithmeticException if n and p aren't coprime
+    * @see #modInverse(long, long)
     */
-  public static long modInverse(long n, int p) {    
-    long q, r0, r1, r2, s0, s1, s2, t0, t1, t2;
-    
-    if (n > p) n %= p; //Save some time
+  public static long modInverse(long n, int p) {
+    return modInverse(n, (long) p);
+  }
+  
+  /**
+    * Computes the inverse of n modulo m using the Extended Euclidean Algorithm, for any positive long modulus.
+    * <p>
+    * Only the coefficient of n is tracked.  Its magnitude never exceeds m, so nothing overflows.
+    * @param n a number coprime to m; may be negative
+    * @param m the modulus; positive
+    * @return the inverse of n modulo m, in \([0, m)\)
+    * @throws ArithmeticException if n and m aren't coprime
+    */
+  public static long modInverse(long n, long m) {
+    if (m < 1)
+      throw new IllegalArgumentException("Modulus must be positive: " + m);
     
-    //Initial conditions
-    r0 = p; r1 = n;
-    s0 = 1; s1 = 0;
-    t0 = 0; t1 = 1;
+    long r0 = m, r1 = Math.floorMod(n, m);
+    long t0 = 0, t1 = 1;
     
-    //Now, we use the extended euclidean algorithm
-    while(r1 > 0) { //r2 is the "current r," r1 is "one r ago," and r0 is "two r's ago"
-      q = r0 / r1;
-      r2 = r0 - r1*q;
-      
-      s2 = s0 - q*s1;
-      t2 = t0 - q*t1;
-      
-      s0 = s1; s1 = s2;
-      t0 = t1; t1 = t2;
-      r0 = r1; r1 = r2;
+    //Invariant: t_i n = r_i (mod m)
+    while (r1 != 0) {
+      long q = r0 / r1;
+      long r2 = r0 - q * r1; r0 = r1; r1 = r2;
+      long t2 = t0 - q * t1; t0 = t1; t1 = t2;
     }
     
-    if (t0 < 0) t0 += p; //Make positive!
+    if (r0 != 1)
+      throw new ArithmeticException(n + " has no inverse modulo " + m);
     
-    return t0; //Coefficient of n in the equation "xn+yp = 1"
-  } 
+    return (t0 < 0) ? t0 + m : t0 % m;
+  }
+  
+  //Bit n of SMALL_PRIME_MASK[n >>> 6] is set iff n < 128 is prime
+  private static final long[] SMALL_PRIME_MASK = {
+    0x28208a20a08a28acL, //2, 3, 5, ..., 61
+    0x800228a202088288L  //67, 71, ..., 127
+  };
+  
+  //Odd primes used to pre-filter isPrime's input
+  private static final int[] TRIAL_PRIMES = {3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61};
+  
+  //Miller-Rabin bases that are deterministic below 2^32 (Jaeschke) and for all of 2^64 (Sinclair)
+  private static final long[] BASES_32 = {2, 7, 61};
+  private static final long[] BASES_64 = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
   
   /**
     * Returns true if the provided integer is prime
     * <p>
-    * Uses repeated Miller-Rabin tests, treating the first 12 primes as bases.
-    * Valid for all values < 2^64 (and a little bit above); do not extend for use with BigIntegers.
-    * Runs in O(lg^3 N) time.  
-    * To compute all primes less than N, this takes O(lg^3(N!)) = O(N lg^3 N) time.
+    * Values below 128 are looked up in a bitmask, and anything else with a prime factor below 64 is rejected by
+    * trial division.  Survivors get a deterministic Miller-Rabin test: below \(2^{32}\), the bases 2, 7 and 61
+    * suffice (Jaeschke), and for every long, the seven bases found by Jim Sinclair do.
+    * Runs in O(lg^3 N) time with ordinary arithmetic, and in O(lg N) multiplications using {@link Montgomery} form.
     * <p>
     * The idea of this algorithm is to write n-1 = (2^s)d where d is odd and s is non-negative.
     * Then, n is an a-SPRP if either a^d = 1 (mod n) or (a^d)^2^r = -1 (mod n) for some non-negative r less than s.
-    * From OEIS, if n is a-SPRP for the first 12 primes and n < 2^64, then n is prime.
+    * The decomposition is done once per n, and the square chain is walked by repeated squaring.
     * <p>
-    * Sources: https://primes.utm.edu/prove/prove2_3.html and http://oeis.org/A014233.
+    * Sources: https://primes.utm.edu/prove/prove2_3.html and https://miller-rabin.appspot.com/.
     * @param n the number to test
     * @return true iff n is prime
     */
   public static boolean isPrime(long n) {
-    int[] b = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
-    boolean isPrime = true;
-    for (int i = 0; i < b.length && b[i] < n; i++) {
-      long d = n-1;
-      long pow = (d & ~(d-1)); //2^s
-      
-      while ((d&1)==0) d >>= 1;
-      
-      long ad = modPow(b[i], d, n);
-      boolean isSPRP = (ad == 1);
-      for (long r = 1; !isSPRP && r < pow; r <<= 1)
-        isSPRP = (modPow(ad, r, n) == (n-1));
-      
-      isPrime &= isSPRP;
+    if (n < 128) return n >= 0 && (SMALL_PRIME_MASK[(int) (n >>> 6)] & (1L << n)) != 0;
+    if ((n & 1) == 0) return false;
+    for (int p : TRIAL_PRIMES)
+      if (n % p == 0) return false;
+    if (n < 64 * 64) return true; //No factor below 64, so no factor below sqrt(n)
+    
+    long d = n - 1;
+    int s = Long.numberOfTrailingZeros(d);
+    d >>= s;
+    
+    if (n < (1L << 32)) {
+      for (long a : BASES_32)
+        if (!isStrongProbablePrime32(n, d, s, a)) return false;
+      return true;
     }
     
-    return isPrime && !(n==0 || n==1);
+    Montgomery mont = new Montgomery(n);
+    for (long a : BASES_64)
+      if (!isStrongProbablePrime(mont, d, s, a)) return false;
+    return true;
+  }
+  
+  /**
+    * Tests each value for primality with {@link #isPrime(long)}.
+    * @param values the numbers to test
+    * @param results receives true at index i iff values[i] is prime; at least as long as values
+    */
+  public static void isPrime(long[] values, boolean[] results) {
+    if (results.length < values.length)
+      throw new IllegalArgumentException("Result array is shorter than the input");
+    
+    for (int i = 0; i < values.length; i++)
+      results[i] = isPrime(values[i]);
+  }
+  
+  //Miller-Rabin for odd n < 2^32, where n - 1 = 2^s d; products fit in 64 bits as unsigned values
+  private static boolean isStrongProbablePrime32(long n, long d, int s, long a) {
+    a %= n;
+    if (a == 0) return true; //The base is a multiple of n, so it tells us nothing
+    
+    long x = 1;
+    for (long e = d; e > 0; e >>= 1) {
+      if ((e & 1) == 1) x = Long.remainderUnsigned(x * a, n);
+      a = Long.remainderUnsigned(a * a, n);
+    }
+    
+    if (x == 1 || x == n - 1) return true;
+    for (int r = 1; r < s; r++) {
+      x = Long.remainderUnsigned(x * x, n);
+      if (x == n - 1) return true;
+      if (x == 1) return false; //1 without passing through -1; n is composite
+    }
+    
+    return false;
+  }
+  
+  //Miller-Rabin in Montgomery form, where n - 1 = 2^s d
+  private static boolean isStrongProbablePrime(Montgomery mont, long d, int s, long a) {
+    long n = mont.modulus();
+    a %= n;
+    if (a == 0) return true; //The base is a multiple of n, so it tells us nothing
+    
+    long one = mont.one(), minusOne = n - one;
+    long x = mont.pow(mont.toMontgomery(a), d);
+    
+    if (x == one || x == minusOne) return true;
+    for (int r = 1; r < s; r++) {
+      x = mont.square(x);
+      if (x == minusOne) return true;
+      if (x == one) return false;
+    }
+    
+    return false;
   }
   
   /**
     * Performs modular exponentiation
     * <p>
     * Uses the "method of repeated squares" to compute the result in O(lg N) time, where N is the exponent.
+    * Correct for every positive long modulus; large odd moduli are handled in {@link Montgomery} form.
     */
   public static long modPow(long a, long n, long m) {
+    if (m == 1) return 0;
+    if (m > 3037000499L && (m & 1) == 1) return new Montgomery(m).modPow(a, n); //Products would overflow
+    
     long retVal = 1;
     
-    for (long currMul = a%m; n > 0; n >>= 1) {
-      if ((n&1) == 1) retVal = (retVal * currMul) % m;
-      currMul = (currMul * currMul) % m;
+    for (long currMul = Math.floorMod(a, m); n > 0; n >>= 1) {
+      if ((n&1) == 1) retVal = mulMod(retVal, currMul, m);
+      currMul = mulMod(currMul, currMul, m);
     }
     
     return retVal;
   }
   
   /**
-    * Calculates the nth partition number
+    * Computes \(ab \bmod m\) without overflow, for any positive long modulus.
+    * <p>
+    * The full 128-bit product is formed with {@link Math#multiplyHigh(long, long)} and then reduced exactly.
+    * @param a the first factor
+    * @param b the second factor
+    * @param m the modulus; positive
+    * @return \(ab \bmod m\), in \([0, m)\)
+    */
+  public static long mulMod(long a, long b, long m) {
+    if (a < 0 || a >= m) a = Math.floorMod(a, m);
+    if (b < 0 || b >= m) b = Math.floorMod(b, m);
+    
+    long hi = Math.multiplyHigh(a, b);
+    long lo = a * b;
+    if (hi == 0 && lo >= 0) return lo % m; //The product fit in a long after all
+    
+    return remainder128(hi, lo, m);
+  }
+  
+  /**
+    * Computes \((2^{64} hi + lo) \bmod m\), treating hi and lo as unsigned.
+    * <p>
+    * Requires \(0 \le hi \lt m\), so the quotient fits in 64 bits.  This is Knuth's Algorithm D for a two-word
+    * dividend and one-word divisor, working in 32-bit digits (after <i>Hacker's Delight</i>, divlu).
+    */
+  static long remainder128(long hi, long lo, long m) {
+    final long b = 1L << 32; //Digit base
+    
+    //Normalize so the divisor's top bit is set
+    int s = Long.numberOfLeadingZeros(m);
+    long v = m << s;
+    long vn1 = v >>> 32, vn0 = v & 0xFFFFFFFFL;
+    long un32 = (s == 0) ? hi : (hi << s) | (lo >>> (64 - s));
+    long un10 = lo << s;
+    long un1 = un10 >>> 32, un0 = un10 & 0xFFFFFFFFL;
+    
+    //First quotient digit; the estimate is at most 2 too large
+    long q1 = Long.divideUnsigned(un32, vn1);
+    long rhat = un32 - q1 * vn1;
+    while (q1 >= b || Long.compareUnsigned(q1 * vn0, (rhat << 32) | un1) > 0) {
+      q1--;
+      rhat += vn1;
+      if (rhat >= b) break;
+    }
+    long un21 = (un32 << 32) + un1 - q1 * v; //Exact, even though the intermediate terms wrap
+    
+    //Second quotient digit
+    long q0 = Long.divideUnsigned(un21, vn1);
+    rhat = un21 - q0 * vn1;
+    while (q0 >= b || Long.compareUnsigned(q0 * vn0, (rhat << 32) | un0) > 0) {
+      q0--;
+      rhat += vn1;
+      if (rhat >= b) break;
+    }
+    
+    return ((un21 << 32) + un0 - q0 * v) >>> s; //Undo the normalization
+  }
+  
+  /**
+    * Calculates the partition numbers \(p(0), \ldots, p(n)\) modulo m.
     * <p>
-    * This uses Euler's Pentagonal Theorem, so it takes O(n) time.
+    * This uses Euler's Pentagonal Theorem,
+    * $$p(k) = \sum_{j \ge 1} (-1)^{j+1} \left( p(k - j(3j-1)/2) + p(k - j(3j+1)/2) \right),$$
+    * whose sum has \(\mathcal{O}(\sqrt{k})\) terms, so it takes \(\mathcal{O}(n\sqrt{n})\) time.  For a prime
+    * modulus and large n, {@link #partitionsModPrime(int, int)} is faster.
+    * @param n the largest index; non-negative
+    * @param m the modulus; positive
+    * @return an array whose kth entry is \(p(k) \bmod m\)
     */
-  /*public static long partition(int n) {
-    if (n == 0) return 1;
-    if (n  < 0) return 0
-  }*/
+  public static long[] partitions(int n, long m) {
+    if (n < 0)
+      throw new IllegalArgumentException("Index must be non-negative: " + n);
+    if (m < 1)
+      throw new IllegalArgumentException("Modulus must be positive: " + m);
+    
+    long[] p = new long[n + 1];
+    p[0] = 1 % m;
+    boolean lazy = m <= (1L << 31); //Then sums of up to 2^32 residues can't overflow
+    
+    for (int k = 1; k <= n; k++) {
+      long plus = 0, minus = 0;
+      for (int j = 1; ; j++) {
+        long g = (long) j * (3 * j - 1) / 2; //The generalized pentagonal numbers g and g + j
+        if (g > k) break;
+        
+        long t = p[(int) (k - g)];
+        if (g + j <= k) t = lazy ? t + p[(int) (k - g - j)] : addMod(t, p[(int) (k - g - j)], m);
+        
+        if ((j & 1) == 1) plus = lazy ? plus + t : addMod(plus, t, m);
+        else minus = lazy ? minus + t : addMod(minus, t, m);
+      }
+      
+      p[k] = Math.floorMod(plus % m - minus % m, m);
+    }
+    
+    return p;
+  }
+  
+  /**
+    * Calculates the partition numbers \(p(0), \ldots, p(n)\) modulo a prime, in \(\mathcal{O}(n \lg n)\) time.
+    * <p>
+    * Their generating function is \(1/\prod_{k \ge 1}(1 - x^k)\), and by the Pentagonal Theorem the product is
+    * the sparse series \(\sum_j (-1)^j x^{j(3j-1)/2}\) (over all integers j).  That's inverted as a power series
+    * with {@link math.algebra.Polynomial#inverse(int)}, which multiplies with number-theoretic transforms.
+    * @param n the largest index; non-negative
+    * @param p the modulus; assumed to be prime (undefined behavior if not)
+    * @return an array whose kth entry is \(p(k) \bmod p\)
+    */
+  public static int[] partitionsModPrime(int n, int p) {
+    if (n < 0)
+      throw new IllegalArgumentException("Index must be non-negative: " + n);
+    
+    int[] euler = new int[n + 1];
+    euler[0] = 1 % p;
+    for (int j = 1; ; j++) {
+      long g = (long) j * (3 * j - 1) / 2;
+      if (g > n) break;
+      
+      int sign = ((j & 1) == 1) ? p - 1 : 1 % p;
+      euler[(int) g] = sign;
+      if (g + j <= n) euler[(int) (g + j)] = sign;
+    }
+    
+    IntField field = new IntField(p);
+    return Arrays.copyOf(new Polynomial(field, euler).inverse(n + 1).toArray(), n + 1);
+  }
+  
+  /**
+    * Calculates the nth partition number exactly.
+    * <p>
+    * Runs the same pentagonal recurrence as {@link #partitions(int, long)} on {@link BigInteger}s.  \(p(n)\) has
+    * about \(\pi \sqrt{2n/3} / \ln 10\) digits, so this takes \(\mathcal{O}(n^2)\) word operations, and memory for
+    * every smaller partition number.
+    * @param n the index
+    * @return \(p(n)\), or 0 if n is negative
+    */
+  public static BigInteger partition(int n) {
+    if (n < 0) return BigInteger.ZERO;
+    
+    BigInteger[] p = new BigInteger[n + 1];
+    p[0] = BigInteger.ONE;
+    
+    for (int k = 1; k <= n; k++) {
+      BigInteger plus = BigInteger.ZERO, minus = BigInteger.ZERO;
+      for (int j = 1; ; j++) {
+        long g = (long) j * (3 * j - 1) / 2;
+        if (g > k) break;
+        
+        BigInteger t = p[(int) (k - g)];
+        if (g + j <= k) t = t.add(p[(int) (k - g - j)]);
+        
+        if ((j & 1) == 1) plus = plus.add(t);
+        else minus = minus.add(t);
+      }
+      
+      p[k] = plus.subtract(minus);
+    }
+    
+    return p[n];
+  }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package math;
+
+import java.util.stream.IntStream;
+
+/**
+  * Counts the primes up to x with the Meissel-Lehmer method, in about \(\mathcal{O}(x^{2/3})\) time and space.
+  * <p>
+  * With \(a = \pi(x^{1/3})\) and \(b = \pi(x^{1/2})\),
+  * $$\pi(x) = \phi(x, a) + a - 1 - \sum_{a \lt i \le b} \left(\pi(x / p_i) - i + 1\right),$$
+  * where \(\phi(x, a)\) counts the integers up to x with no prime factor among the first a primes.  The sum needs
+  * \(\pi\) up to \(x^{2/3}\), which comes from a bitset of the odd primes (sieved in parallel) and a running count
+  * of its set bits per word.  \(\phi\) is expanded with \(\phi(x, a) = \phi(x, a - 1) - \phi(x / p_a, a - 1)\),
+  * cut short three ways:
+  * <ul>
+  *   <li>for a up to {@value #SMALL}, \(\phi\) is periodic mod the primorial \(p_a\#\), so it's a table lookup;
+  *   <li>once \(p_{a+1}^2 \gt x\), the integers left are 1 and the primes in \((p_a, x]\), so
+  *       \(\phi(x, a) = \pi(x) - a + 1\) from the bitset;
+  *   <li>small arguments are memoized in a cache shared by every thread.
+  * </ul>
+  * The top level of the expansion, and the sum, are split across the common pool.
+  */
+final class PrimeCounter {
+  private static final int SMALL = 6; //phi(x, a) for a <= SMALL comes from a table
+  private static final int[] PRIMORIAL = { 1, 2, 6, 30, 210, 2310, 30030 };
+  private static final int[] TOTIENT = { 1, 1, 2, 8, 48, 480, 5760 }; //phi(p_a#, a)
+  private static final char[][] SMALL_PHI = smallPhiTables(); //phi(r, a) for 0 <= r < p_a#
+
+  private static final int CACHE_LIMIT = 1 << 16; //Memoize phi(x, a) for x below this...
+  private static final int CACHE_DEPTH = 128;     //...and a below this
+  private static final int BLOCK_SHIFT = 16;      //Set bits are counted in longs per block of 2^16 words
+
+  private final long[] bits;    //Odd primes up to the table limit, as from PrimeSieve.oddPrimeBits
+  private final long[] bases;   //The number of set bits in the blocks before each block
+  private final int[] counts;   //The number of set bits in the words before each word, within its block
+  private final int[] primes;   //Every prime up to sqrt(x)
+  private final char[][] cache; //cache[a][x] = phi(x, a), or 0 if it isn't known yet
+
+  private PrimeCounter(long x) {
+    //x / p for the smallest prime p past the cube root is below (cbrt(x) + 1)^2
+    long r = iroot3(x) + 1;
+    long limit = Math.max(NumberTheory.isqrt(x), r * r);
+    this.bits = PrimeSieve.parallelOddPrimeBits(limit);
+    this.bases = new long[((bits.length - 1) >>> BLOCK_SHIFT) + 1];
+    this.counts = new int[bits.length];
+    long total = 0; //Past about 5 * 10^10 primes, so x past 10^16, this overflows an int
+    for (int i = 0; i < bits.length; i++) {
+      if ((i & ((1 << BLOCK_SHIFT) - 1)) == 0) bases[i >>> BLOCK_SHIFT] = total;
+      counts[i] = (int) (total - bases[i >>> BLOCK_SHIFT]);
+      total += Long.bitCount(bits[i]);
+    }
+
+    this.primes = PrimeSieve.primes((int) NumberTheory.isqrt(x)); //At most 2^28, for x up to the limit
+    this.cache = new char[Math.min(CACHE_DEPTH, primes.length)][];
+  }
+
+  /**
+    * @param x the (inclusive) upper limit; at most {@link NumberTheory#PRIME_COUNT_LIMIT}
+    * @return \(\pi(x)\)
+    */
+  static long count(long x) {
+    if (x > NumberTheory.PRIME_COUNT_LIMIT)
+      throw new IllegalArgumentException("Cannot count primes beyond " + NumberTheory.PRIME_COUNT_LIMIT + ": " + x);
+    if (x < PRIMORIAL[SMALL] * 2L) return PrimeSieve.count(0, x);
+    return new PrimeCounter(x).pi(x);
+  }
+
+  private long pi(long x) {
+    int a = (int) smallPi(iroot3(x)), b = primes.length;
+
+    //phi(x, a) = phi(x, SMALL) - sum phi(x / p_i, i - 1), with the terms spread over the pool
+    long phi = phiSmall(x, SMALL) - IntStream.rangeClosed(SMALL + 1, a).parallel()
+      .mapToLong(i -> phi(x / primes[i-1], i - 1)).sum();
+
+    long p2 = IntStream.rangeClosed(a + 1, b).parallel()
+      .mapToLong(i -> smallPi(x / primes[i-1]) - i + 1).sum();
+
+    return phi + a - 1 - p2;
+  }
+
+  //phi(x, a): the integers in [1, x] not divisible by any of the first a primes
+  private long phi(long x, int a) {
+    if (a <= SMALL) return phiSmall(x, a);
+    if ((long) primes[a] * primes[a] > x) return (x < primes[a-1]) ? Math.min(x, 1) : smallPi(x) - a + 1;
+
+    boolean cached = x < CACHE_LIMIT && a < cache.length;
+    if (cached) {
+      char[] row = cache[a];
+      if (row != null && row[(int) x] != 0) return row[(int) x];
+    }
+
+    long retVal = phiSmall(x, SMALL);
+    for (int i = SMALL + 1; i <= a; i++) retVal -= phi(x / primes[i-1], i - 1);
+
+    if (cached) cacheRow(a)[(int) x] = (char) retVal; //Racy but benign; every writer stores the same value
+    return retVal;
+  }
+
+  private static long phiSmall(long x, int a) {
+    return (x / PRIMORIAL[a]) * TOTIENT[a] + SMALL_PHI[a][(int) (x % PRIMORIAL[a])];
+  }
+
+  private char[] cacheRow(int a) {
+    char[] row = cache[a];
+    if (row == null) {
+      synchronized (cache) {
+        row = cache[a];
+        if (row == null) cache[a] = row = new char[CACHE_LIMIT];
+      }
+    }
+
+    return row;
+  }
+
+  //pi(n) for n up to the table limit
+  private long smallPi(long n) {
+    if (n < 2) return 0;
+
+    long i = (n - 1) >>> 1; //Bit index of the largest odd number up to n
+    int w = (int) (i >>> 6);
+    return 1 + bases[w >>> BLOCK_SHIFT] + counts[w] + Long.bitCount(bits[w] & (-1L >>> (63 - (i & 63))));
+  }
+
+  //floor(cbrt(x))
+  private static long iroot3(long x) {
+    long r = (long) Math.cbrt((double) x);
+    while (r * r * r > x) r--;
+    while ((r + 1) * (r + 1) * (r + 1) <= x) r++;
+    return r;
+  }
+
+  private static char[][] smallPhiTables() {
+    int[] small = { 2, 3, 5, 7, 11, 13 };
+    char[][] retVal = new char[SMALL + 1][];
+
+    for (int a = 0; a <= SMALL; a++) {
+      char[] t = new char[PRIMORIAL[a]];
+      int ct = 0;
+      for (int r = 0; r < t.length; r++) {
+        boolean coprime = r > 0;
+        for (int k = 0; k < a && coprime; k++) coprime = r % small[k] != 0;
+        if (coprime) ct++;
+        t[r] = (char) ct;
+      }
+      retVal[a] = t;
+    }
+
+    return retVal;
+  }
+}
@@ -0,0 +1,517 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongConsumer;
+
+/**
+  * A segmented Sieve of Eratosthenes over bit-packed blocks of odd integers.
+  * <p>
+  * Only odd numbers are stored, one bit each, and the range is processed in segments of
+  * {@value #SEGMENT_BITS} odd numbers (32 KiB), so the working set stays in cache however far out we sieve.
+  * Memory use is \(\mathcal{O}(\sqrt{N})\) for the base primes, plus one segment, plus whatever the caller
+  * decides to keep.  Crossing off starts at \(p^2\) for each base prime \(p\).
+  */
+public final class PrimeSieve {
+  /**
+    * The number of odd integers covered by one segment.
+    */
+  static final int SEGMENT_BITS = 1 << 18;
+
+  /**
+    * The largest value that can be sieved, \((2^{31} - 1)^2\), so that the base primes up to its square root fit in
+    * an int.  Sieving anywhere near it keeps about 1.3 GB of base primes and their next multiples.
+    */
+  public static final long MAX_LIMIT = (long) Integer.MAX_VALUE * Integer.MAX_VALUE;
+
+  //Below this limit, base primes come from a plain (unsegmented) sieve
+  private static final int SIMPLE_LIMIT = 1 << 16;
+
+  private PrimeSieve() {}
+
+  /**
+    * Finds all primes less than or equal to a limit.
+    * @param N the (inclusive) upper limit
+    * @return the primes up to N, in order
+    */
+  public static int[] primes(int N) {
+    if (N < 2) return new int[0];
+    if (N < SIMPLE_LIMIT) return simplePrimes(N);
+
+    final int[][] buf = { new int[estimateCount(N)] };
+    final int[] size = {0};
+    forEachPrime(2, N, p -> {
+      if (size[0] == buf[0].length) buf[0] = Arrays.copyOf(buf[0], size[0] + (size[0] >> 1));
+      buf[0][size[0]++] = (int) p;
+    });
+
+    return Arrays.copyOf(buf[0], size[0]);
+  }
+
+  /**
+    * Finds all primes in the closed interval \([lo, hi]\).
+    * <p>
+    * Only the base primes up to \(\sqrt{hi}\) and the window itself are sieved, so narrow windows far from zero
+    * are cheap.
+    * @param lo the lower bound (inclusive)
+    * @param hi the upper bound (inclusive); at most {@link #MAX_LIMIT}
+    * @return the primes in range, in order
+    */
+  public static long[] primesInRange(long lo, long hi) {
+    Accumulator acc = new Accumulator();
+    forEachPrime(lo, hi, acc);
+    return acc.toArray();
+  }
+
+  /**
+    * Finds all primes in \([lo, hi]\), sieving independent chunks of the range in parallel on the common pool.
+    * @param lo the lower bound (inclusive)
+    * @param hi the upper bound (inclusive); at most {@link #MAX_LIMIT}
+    * @return the primes in range, in order
+    * @see #parallelPrimesInRange(long, long, ForkJoinPool)
+    */
+  public static long[] parallelPrimesInRange(long lo, long hi) {
+    return parallelPrimesInRange(lo, hi, ForkJoinPool.commonPool());
+  }
+
+  /**
+    * Finds all primes in \([lo, hi]\), sieving independent chunks of the range in parallel.
+    * <p>
+    * The base primes up to \(\sqrt{hi}\) are found once and shared; each chunk then runs its own segmented sieve,
+    * and the results are concatenated in order.
+    * @param lo the lower bound (inclusive)
+    * @param hi the upper bound (inclusive); at most {@link #MAX_LIMIT}
+    * @param pool the pool to sieve on
+    * @return the primes in range, in order
+    */
+  public static long[] parallelPrimesInRange(long lo, long hi, ForkJoinPool pool) {
+    checkRange(lo, hi);
+    if (hi < 2 || lo > hi) return new long[0];
+
+    Accumulator acc = new Accumulator();
+    if (lo <= 2) acc.accept(2);
+    if (hi < 3) return acc.toArray();
+
+    List<ChunkTask> chunks = split(lo, hi, pool.getParallelism(), false);
+    pool.invoke(new ForkAll(chunks));
+
+    int total = acc.size;
+    for (ChunkTask c : chunks) total += c.primes.size;
+
+    long[] retVal = Arrays.copyOf(acc.toArray(), total);
+    int pos = acc.size;
+    for (ChunkTask c : chunks) {
+      System.arraycopy(c.primes.data, 0, retVal, pos, c.primes.size);
+      pos += c.primes.size;
+    }
+
+    return retVal;
+  }
+
+  /**
+    * Counts the primes in \([lo, hi]\), sieving independent chunks of the range in parallel on the common pool.
+    * @param lo the lower bound (inclusive)
+    * @param hi the upper bound (inclusive); at most {@link #MAX_LIMIT}
+    * @return the number of primes in range
+    */
+  public static long parallelCount(long lo, long hi) {
+    return parallelCount(lo, hi, ForkJoinPool.commonPool());
+  }
+
+  /**
+    * Counts the primes in \([lo, hi]\), sieving independent chunks of the range in parallel.
+    * @param lo the lower bound (inclusive)
+    * @param hi the upper bound (inclusive); at most {@link #MAX_LIMIT}
+    * @param pool the pool to sieve on
+    * @return the number of primes in range
+    */
+  public static long parallelCount(long lo, long hi, ForkJoinPool pool) {
+    checkRange(lo, hi);
+    if (hi < 2 || lo > hi) return 0;
+    long ct = (lo <= 2) ? 1 : 0;
+    if (hi < 3) return ct;
+
+    List<ChunkTask> chunks = split(lo, hi, pool.getParallelism(), true);
+    pool.invoke(new ForkAll(chunks));
+
+    for (ChunkTask c : chunks) ct += c.count;
+    return ct;
+  }
+
+  /**
+    * Streams every prime in \([lo, hi]\), in increasing order, without storing them.
+    * @param lo the lower bound (inclusive)
+    * @param hi the upper bound (inclusive); at most {@link #MAX_LIMIT}
+    * @param action called once for each prime
+    */
+  public static void forEachPrime(long lo, long hi, LongConsumer action) {
+    checkRange(lo, hi);
+    if (hi < 2 || lo > hi) return;
+    if (lo <= 2) action.accept(2);
+    if (hi < 3) return;
+
+    Segmenter s = new Segmenter(lo, hi);
+    while (s.advance()) s.forEachPrime(action);
+  }
+
+  /**
+    * Counts the primes in \([lo, hi]\) without storing them.
+    * @param lo the lower bound (inclusive)
+    * @param hi the upper bound (inclusive); at most {@link #MAX_LIMIT}
+    * @return the number of primes in range
+    */
+  public static long count(long lo, long hi) {
+    checkRange(lo, hi);
+    if (hi < 2 || lo > hi) return 0;
+    long ct = (lo <= 2) ? 1 : 0;
+    if (hi < 3) return ct;
+
+    Segmenter s = new Segmenter(lo, hi);
+    while (s.advance()) ct += s.count();
+
+    return ct;
+  }
+
+  /**
+    * Returns a compact bitset view of the primes up to N.
+    * <p>
+    * Bit \(i\) (bit <code>i &amp; 63</code> of word <code>i &gt;&gt;&gt; 6</code>) is set iff \(2i+1\) is an
+    * odd prime no greater than N.  The only even prime, 2, is left for the caller to special-case.
+    * This takes \(N/16\) bytes, versus the \(4\pi(N)\) bytes of an int[] of the primes themselves.
+    * @param N the (inclusive) upper limit
+    * @return the bitset of odd primes
+    */
+  public static long[] oddPrimeBits(long N) {
+    checkRange(0, N);
+    if ((N >>> 7) >= Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Bitset would not fit in an array: " + N);
+    long[] bits = new long[(int) (((N >>> 1) + 64) >>> 6)];
+    if (N < 3) return bits;
+
+    Segmenter s = new Segmenter(3, N);
+    while (s.advance()) s.copyPrimeBits(bits);
+
+    return bits;
+  }
+
+  /**
+    * Returns the same bitset as {@link #oddPrimeBits(long)}, sieving independent chunks of it in parallel on the
+    * common pool.
+    * @param N the (inclusive) upper limit
+    * @return the bitset of odd primes
+    */
+  public static long[] parallelOddPrimeBits(long N) {
+    return parallelOddPrimeBits(N, ForkJoinPool.commonPool());
+  }
+
+  /**
+    * Returns the same bitset as {@link #oddPrimeBits(long)}, sieving independent chunks of it in parallel.
+    * @param N the (inclusive) upper limit
+    * @param pool the pool to sieve on
+    * @return the bitset of odd primes
+    */
+  public static long[] parallelOddPrimeBits(long N, ForkJoinPool pool) {
+    checkRange(0, N);
+    if ((N >>> 7) >= Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Bitset would not fit in an array: " + N);
+    long[] bits = new long[(int) (((N >>> 1) + 64) >>> 6)];
+    if (N < 3) return bits;
+
+    //Chunks start on word boundaries (odd numbers 128k + 1), so no two tasks write to the same word
+    int[] base = basePrimes(N);
+    long span = Math.max(2L * SEGMENT_BITS, N / (8L * pool.getParallelism()) + 1);
+    span = (span + 127) & -128;
+
+    List<BitsTask> chunks = new ArrayList<BitsTask>();
+    for (long start = 1; start <= N; start += span) {
+      chunks.add(new BitsTask(start, Math.min(N, start + span - 1), base, bits));
+      if (N - start < span) break; //Don't overflow start
+    }
+
+    pool.invoke(new ForkAll(chunks));
+    return bits;
+  }
+
+  /**
+    * An upper bound on \(\pi(N)\), the number of primes up to N, for sizing buffers.
+    * (Rosser and Schoenfeld: \(\pi(x) \lt 1.25506 \frac{x}{\ln x}\) for \(x \gt 1\).)
+    */
+  static int estimateCount(long N) {
+    if (N < 17) return 6;
+    return (int) Math.min(Integer.MAX_VALUE - 8, (long) (1.25506 * N / Math.log(N)) + 1);
+  }
+
+  /**
+    * Returns the odd primes up to \(\sqrt{hi}\), which are all that's needed to sieve up to hi.
+    */
+  static int[] basePrimes(long hi) {
+    int limit = (int) NumberTheory.isqrt(hi);
+    if (limit < SIMPLE_LIMIT) {
+      int[] all = simplePrimes(limit);
+      return (all.length == 0) ? all : Arrays.copyOfRange(all, 1, all.length); //Drop the 2
+    }
+
+    //Through the bitset, so the only int[] is the exact-sized result (about 420 MB at MAX_LIMIT)
+    long[] bits = oddPrimeBits(limit);
+    int ct = 0;
+    for (long w : bits) ct += Long.bitCount(w);
+
+    int[] retVal = new int[ct];
+    int size = 0;
+    for (int i = 0; i < bits.length; i++) {
+      for (long w = bits[i]; w != 0; w &= w - 1)
+        retVal[size++] = (int) (2 * ((long) i * 64 + Long.numberOfTrailingZeros(w)) + 1);
+    }
+    return retVal;
+  }
+
+  //An unsegmented odd-only sieve for small limits; used to bootstrap the base primes
+  private static int[] simplePrimes(int N) {
+    if (N < 2) return new int[0];
+
+    boolean[] composite = new boolean[(N - 1) / 2]; //Index i represents 2i+3
+    int[] retVal = new int[estimateCount(N)];
+    int size = 0;
+    retVal[size++] = 2;
+
+    for (int i = 0; i < composite.length; i++) {
+      if (composite[i]) continue;
+
+      int p = 2*i + 3;
+      retVal[size++] = p;
+
+      //The first odd multiple not already crossed off is p^2, at index (p^2-3)/2
+      for (long j = ((long) p * p - 3) / 2; j < composite.length; j += p) composite[(int) j] = true;
+    }
+
+    return Arrays.copyOf(retVal, size);
+  }
+
+  //Splits [lo, hi] (with hi >= 3) into a few chunks per thread, each at least one segment wide
+  private static List<ChunkTask> split(long lo, long hi, int parallelism, boolean countOnly) {
+    lo = Math.max(lo, 3);
+    int[] base = basePrimes(hi);
+    long span = Math.max(2L * SEGMENT_BITS, (hi - lo) / (8L * parallelism) + 1);
+    span += span & 1; //Keep every chunk starting on the same parity
+
+    List<ChunkTask> chunks = new ArrayList<ChunkTask>();
+    for (long start = lo; start <= hi; start += span) {
+      chunks.add(new ChunkTask(start, Math.min(hi, start + span - 1), base, countOnly));
+      if (hi - start < span) break; //Don't overflow start
+    }
+
+    return chunks;
+  }
+
+  private static void checkRange(long lo, long hi) {
+    if (hi > MAX_LIMIT)
+      throw new IllegalArgumentException("Cannot sieve beyond " + MAX_LIMIT + ": " + hi);
+  }
+
+  //Sieves one chunk of a parallel run, either collecting or just counting its primes
+  @SuppressWarnings("serial") //Tasks are never serialized
+  private static final class ChunkTask extends RecursiveAction {
+    private final long lo, hi;
+    private final int[] base;
+    private final boolean countOnly;
+    final Accumulator primes = new Accumulator();
+    long count;
+
+    ChunkTask(long lo, long hi, int[] base, boolean countOnly) {
+      this.lo = lo;
+      this.hi = hi;
+      this.base = base;
+      this.countOnly = countOnly;
+    }
+
+    @Override
+    protected void compute() {
+      Segmenter s = new Segmenter(lo, hi, base);
+      while (s.advance()) {
+        if (countOnly) count += s.count();
+        else s.forEachPrime(primes);
+      }
+    }
+  }
+
+  //Sieves one chunk of a parallel bitset, writing only the words that cover it
+  @SuppressWarnings("serial") //Tasks are never serialized
+  private static final class BitsTask extends RecursiveAction {
+    private final long lo, hi;
+    private final int[] base;
+    private final long[] bits;
+
+    BitsTask(long lo, long hi, int[] base, long[] bits) {
+      this.lo = lo;
+      this.hi = hi;
+      this.base = base;
+      this.bits = bits;
+    }
+
+    @Override
+    protected void compute() {
+      Segmenter s = new Segmenter(lo, hi, base);
+      while (s.advance()) s.copyPrimeBits(bits);
+    }
+  }
+
+  @SuppressWarnings("serial") //Tasks are never serialized
+  private static final class ForkAll extends RecursiveAction {
+    private final List<? extends RecursiveAction> tasks;
+
+    ForkAll(List<? extends RecursiveAction> tasks) {
+      this.tasks = tasks;
+    }
+
+    @Override
+    protected void compute() {
+      invokeAll(tasks);
+    }
+  }
+
+  //A growable long[], used to collect primes without boxing them
+  private static final class Accumulator implements LongConsumer {
+    long[] data = new long[16];
+    int size;
+
+    @Override
+    public void accept(long p) {
+      if (size == data.length) data = Arrays.copyOf(data, size << 1);
+      data[size++] = p;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(data, size);
+    }
+  }
+
+  /**
+    * Walks a range of odd integers one segment at a time.
+    * <p>
+    * After each call to {@link #advance()}, bit j of {@link #bits} is clear iff \(low + 2j\) is prime, for
+    * \(0 \le j \lt length\).  The next multiple of each base prime is carried from segment to segment, so no
+    * division is done after construction.
+    */
+  static final class Segmenter {
+    final long[] bits = new long[SEGMENT_BITS >>> 6];
+    long low;   //The odd number represented by bit 0
+    int length; //The number of valid bits in this segment
+
+    private final long hi;
+    private final int[] base;  //Odd base primes, ascending
+    private final long[] next; //The next odd multiple of base[i] to cross off
+    private long nextLow;
+
+    /**
+      * @param lo the lower bound (inclusive); values below 3 are raised to 3, and even values rounded up
+      * @param hi the upper bound (inclusive)
+      */
+    Segmenter(long lo, long hi) {
+      this(lo, hi, basePrimes(hi));
+    }
+
+    /**
+      * @param base the odd primes up to at least \(\sqrt{hi}\), ascending; may be shared between segmenters
+      */
+    Segmenter(long lo, long hi, int[] base) {
+      lo = Math.max(lo, 3) | 1;
+      this.hi = hi;
+      this.base = base;
+      this.next = new long[base.length];
+      this.nextLow = lo;
+
+      for (int i = 0; i < base.length; i++) {
+        long p = base[i];
+        long m = Math.max(p * p, (lo + p - 1) / p * p);
+        if ((m & 1) == 0) m += p; //Only odd multiples are represented
+        next[i] = m;
+      }
+    }
+
+    /**
+      * Sieves the next segment.
+      * @return false if the range is exhausted
+      */
+    boolean advance() {
+      if (nextLow > hi) return false;
+
+      low = nextLow;
+      long segEnd = Math.min(hi, low + 2L * (SEGMENT_BITS - 1));
+      length = (int) ((segEnd - low) >>> 1) + 1;
+      nextLow = segEnd + 2;
+
+      Arrays.fill(bits, 0, (length + 63) >>> 6, 0L);
+
+      for (int i = 0; i < base.length; i++) {
+        long p = base[i];
+        if (p * p > segEnd) break; //Larger primes have nothing left to cross off in this segment
+        if (next[i] > segEnd) continue;
+
+        long j = (next[i] - low) >>> 1;
+        if (p < SEGMENT_BITS) { //Int arithmetic for the inner loop; j + p can't overflow here
+          int k = (int) j, step = (int) p, len = length;
+          for (; k < len; k += step)
+            bits[k >>> 6] |= 1L << k;
+          j = k;
+        }
+        else { //At most one multiple lands in this segment
+          bits[(int) (j >>> 6)] |= 1L << j;
+          j += p;
+        }
+
+        next[i] = low + 2L * j;
+      }
+
+      return true;
+    }
+
+    /**
+      * Sets the bits of the current segment's primes in a bitset laid out as by {@link #oddPrimeBits(long)}.  Only
+      * the words overlapping the segment are written.
+      */
+    void copyPrimeBits(long[] dest) {
+      long offset = low >>> 1; //Bit index of low
+      int shift = (int) (offset & 63);
+      for (int k = 0, words = (length + 63) >>> 6; k < words; k++) {
+        long w = ~bits[k];
+        if (k == words - 1 && (length & 63) != 0) w &= (1L << length) - 1;
+
+        //Copy the word across the (possibly unaligned) destination boundary
+        int d = (int) ((offset >>> 6) + k);
+        dest[d] |= w << shift;
+        if (shift != 0 && (w >>> (64 - shift)) != 0) dest[d + 1] |= w >>> (64 - shift);
+      }
+    }
+
+    /**
+      * Passes each prime in the current segment to action, in order.
+      */
+    void forEachPrime(LongConsumer action) {
+      for (int k = 0, words = (length + 63) >>> 6; k < words; k++) {
+        long w = ~bits[k];
+        if (k == words - 1 && (length & 63) != 0) w &= (1L << length) - 1; //Ignore bits past the end
+
+        while (w != 0) {
+          action.accept(low + 2L * ((k << 6) + Long.numberOfTrailingZeros(w)));
+          w &= w - 1;
+        }
+      }
+    }
+
+    /**
+      * @return the number of primes in the current segment
+      */
+    int count() {
+      int ct = 0, full = length >>> 6;
+      for (int k = 0; k < full; k++)
+        ct += Long.bitCount(~bits[k]);
+      if ((length & 63) != 0)
+        ct += Long.bitCount(~bits[full] & ((1L << length) - 1));
+
+      return ct;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package math;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+  * A thread-safe table of the primes up to some limit, which grows on demand.
+  * <p>
+  * Growth extends the sieve from the current limit rather than starting over, and is serialized on the table.
+  * Reads never lock: the primes live in an array that is only ever appended to, and each growth step publishes
+  * a new immutable snapshot (array, size, limit) through a volatile field.  A reader holding an old snapshot
+  * only looks at the prefix that was complete when that snapshot was published.
+  * <p>
+  * A table can also start from primes that were saved in a {@link SieveFile}, in which case it reads them
+  * straight from the mapped file, and only copies them to the heap if it has to grow past the file's limit.
+  * <p>
+  * The table refuses to grow past a configurable memory cap, so a stray large request fails fast instead of
+  * exhausting the heap.
+  */
+public final class PrimeTable {
+  /**
+    * The default memory cap, in bytes, for the primes held by a table (64 MiB, about 16.7 million primes).
+    */
+  public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+  private final long maxBytes;
+  private volatile Snapshot snapshot = new Snapshot(new int[0], 0, 1);
+
+  //An immutable view of the table; storage may be longer than size, but entries past size are not ours to read
+  private static final class Snapshot {
+    final IntBuffer primes;
+    final int[] array; //The heap array behind primes, which growth may append to; null if primes is mapped
+    final int size;
+    final long limit;
+
+    Snapshot(int[] array, int size, long limit) {
+      this.primes = IntBuffer.wrap(array);
+      this.array = array;
+      this.size = size;
+      this.limit = limit;
+    }
+
+    Snapshot(IntBuffer primes, long limit) {
+      this.primes = primes;
+      this.array = null;
+      this.size = primes.limit();
+      this.limit = limit;
+    }
+  }
+
+  /**
+    * Creates an empty table with the default memory cap.
+    */
+  public PrimeTable() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  /**
+    * Creates an empty table.
+    * @param maxBytes the most memory, in bytes, that the table may use for its primes
+    */
+  public PrimeTable(long maxBytes) {
+    if (maxBytes < 0)
+      throw new IllegalArgumentException("Memory cap must be non-negative: " + maxBytes);
+
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+    * Creates a table that starts out holding the given primes, without copying them.
+    * @param primes every prime up to limit, in order, from index 0 up to the buffer's limit
+    * @param limit the limit up to which primes is complete
+    * @param maxBytes the most memory, in bytes, that the table may use for its primes if it grows on the heap
+    */
+  PrimeTable(IntBuffer primes, long limit, long maxBytes) {
+    this(maxBytes);
+    this.snapshot = new Snapshot(primes, limit);
+  }
+
+  /**
+    * Makes sure that every prime up to N is in the table.
+    * <p>
+    * Amortizes growth by at least doubling the limit, as long as that fits under the memory cap.
+    * @param N the required limit; at most Integer.MAX_VALUE
+    * @throws IllegalStateException if holding the primes up to N would exceed the memory cap
+    */
+  public void ensure(long N) {
+    if (N <= snapshot.limit) return;
+    if (N > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Prime table is limited to int primes: " + N);
+
+    grow(N);
+  }
+
+  private synchronized void grow(long N) {
+    Snapshot s = snapshot;
+    if (N <= s.limit) return; //Someone else got here first
+
+    if (bytesFor(N) > maxBytes)
+      throw new IllegalStateException("Primes up to " + N + " would exceed the memory cap of " + maxBytes + " bytes");
+
+    long target = Math.min(Integer.MAX_VALUE, Math.max(N, 2 * s.limit));
+    if (bytesFor(target) > maxBytes) target = N;
+
+    //Append in place if there's room; a reader of an older snapshot never looks past its own size
+    int[] primes = s.array;
+    int capacity = PrimeSieve.estimateCount(target);
+    if (primes == null || capacity > primes.length) {
+      primes = new int[Math.max(capacity, s.size)];
+      s.primes.get(0, primes, 0, s.size);
+    }
+
+    final int[] buf = primes;
+    final int[] size = { s.size };
+    PrimeSieve.forEachPrime(s.limit + 1, target, p -> buf[size[0]++] = (int) p);
+
+    snapshot = new Snapshot(buf, size[0], target);
+  }
+
+  /**
+    * @param N a limit
+    * @return true iff the table could grow to hold every prime up to N within its memory cap
+    */
+  public boolean canHold(long N) {
+    return N <= Integer.MAX_VALUE && bytesFor(N) <= maxBytes;
+  }
+
+  private static long bytesFor(long N) {
+    return 4L * PrimeSieve.estimateCount(N);
+  }
+
+  /**
+    * @return the limit up to which the table is currently complete
+    */
+  public long limit() {
+    return snapshot.limit;
+  }
+
+  /**
+    * @return the number of primes currently in the table
+    */
+  public int size() {
+    return snapshot.size;
+  }
+
+  /**
+    * Returns the ith prime (zero-indexed, so <code>get(0) == 2</code>), growing the table if needed.
+    * @param i the index of the prime
+    * @return the ith prime
+    */
+  public int get(int i) {
+    if (i < 0) throw new IndexOutOfBoundsException("Negative prime index: " + i);
+
+    Snapshot s = snapshot;
+    while (i >= s.size) {
+      ensure(Math.max(2 * s.limit, 16));
+      s = snapshot;
+    }
+
+    return s.primes.get(i);
+  }
+
+  /**
+    * Counts the primes less than or equal to N, growing the table if needed.
+    * @param N the (inclusive) upper limit
+    * @return \(\pi(N)\)
+    */
+  public int primeCount(long N) {
+    if (N < 2) return 0;
+    ensure(N);
+
+    Snapshot s = snapshot;
+    int i = search(s, (int) N);
+    return (i >= 0) ? i + 1 : -(i + 1);
+  }
+
+  /**
+    * Determines if n is prime by looking it up in the table, growing the table if needed.
+    * @param n the integer to test
+    * @return true iff n is prime
+    */
+  public boolean isPrime(int n) {
+    if (n < 2) return false;
+    ensure(n);
+
+    Snapshot s = snapshot;
+    return search(s, n) >= 0;
+  }
+
+  /**
+    * Returns a read-only view of the primes up to N, growing the table if needed.
+    * <p>
+    * The view shares the table's storage, so no primes are copied.
+    * @param N the (inclusive) upper limit
+    * @return a buffer holding the primes up to N, in order, positioned at the first one
+    */
+  public IntBuffer primes(long N) {
+    int ct = primeCount(N);
+    return snapshot.primes.slice(0, ct).asReadOnlyBuffer();
+  }
+
+  //Binary search of a snapshot, with the same return convention as Arrays.binarySearch
+  private static int search(Snapshot s, int key) {
+    if (s.array != null) return Arrays.binarySearch(s.array, 0, s.size, key);
+
+    int lo = 0, hi = s.size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1, v = s.primes.get(mid);
+      if (v < key) lo = mid + 1;
+      else if (v > key) hi = mid - 1;
+      else return mid;
+    }
+
+    return -(lo + 1);
+  }
+}
@@ -1,8 +1,25 @@
 package math;
 
 import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
+/**
+  * A sequence of numbers, indexed by longs.
+  * <p>
+  * Implementations only have to provide {@link #get(long)}.  The primitive views ({@link #getLong(long)},
+  * {@link #fill(long, long[])}, {@link #longIterator()}, {@link #longStream(long, long)}) are built on top of it, and
+  * sequences that can do better, without boxing or by computing a block of terms incrementally, override
+  * {@code getLong} and {@code fill}.
+  * <p>
+  * Streams are split into chunks for parallel evaluation only if {@link #isIndependent()} says that terms can be
+  * computed separately, from any thread; otherwise they run sequentially even if asked to be parallel.
+  */
 public abstract class Sequence<T extends Number> implements Iterable<T>{
+  //Terms computed per call to fill when streaming, and the smallest range worth splitting in two
+  private static final int CHUNK = 1 << 10;
+  
   private final long startIndex;
   private final boolean finiteSequence;
   private final long stopIndex;
@@ -28,6 +45,16 @@ public abstract class Sequence<T extends Number> implements Iterable<T>{
     this.finiteSequence = false;
   }
   
+  /**
+    * Creates a sequence with the same indices as another; for decorators
+    * @param other the sequence whose start index, stop index and finiteness are copied
+    */
+  protected Sequence(Sequence<?> other) {
+    this.startIndex = other.startIndex;
+    this.stopIndex = other.stopIndex;
+    this.finiteSequence = other.finiteSequence;
+  }
+  
   /**
     * Creates an "infinite" sequence with a start index of zero
     */
@@ -41,6 +68,34 @@ public abstract class Sequence<T extends Number> implements Iterable<T>{
     */
   public abstract T get(long n);
   
+  /**
+    * @param n the index
+    * @return the nth value of the sequence, as a long
+    */
+  public long getLong(long n) {
+    return get(n).longValue();
+  }
+  
+  /**
+    * Computes a block of consecutive terms: out[i] receives the term at index from + i.
+    * <p>
+    * Sequences that can step from one term to the next should override this.
+    * @param from the index of the first term
+    * @param out receives the terms
+    */
+  public void fill(long from, long[] out) {
+    checkRange(from, from + out.length);
+    for (int i = 0; i < out.length; i++) out[i] = getLong(from + i);
+  }
+  
+  /**
+    * @return true iff terms may be computed for any indices, in any order, from any number of threads at once.
+    * Streams over sequences that aren't independent are never split.
+    */
+  public boolean isIndependent() {
+    return false;
+  }
+  
   /**
     * @return true iff this is a finite sequence
     */
@@ -69,6 +124,103 @@ public abstract class Sequence<T extends Number> implements Iterable<T>{
     return new SequenceIterator();
   }
   
+  /**
+    * @return an iterator over this sequence, without boxing
+    */
+  public PrimitiveIterator.OfLong longIterator() {
+    return Spliterators.iterator(longSpliterator(startIndex, endIndex()));
+  }
+  
+  /**
+    * @return a stream of every term of this sequence; for an "infinite" sequence, every index below Long.MAX_VALUE
+    */
+  public LongStream longStream() {
+    return longStream(startIndex, endIndex());
+  }
+  
+  /**
+    * @param from the first index, inclusive
+    * @param to the last index, exclusive
+    * @return a stream of the terms with indices in [from, to)
+    */
+  public LongStream longStream(long from, long to) {
+    return StreamSupport.longStream(longSpliterator(from, to), false);
+  }
+  
+  /**
+    * Creates a spliterator over the terms with indices in [from, to).  Terms are computed a chunk at a time with
+    * {@link #fill(long, long[])}, and the range is halved on demand if {@link #isIndependent()}.
+    * @param from the first index, inclusive
+    * @param to the last index, exclusive
+    * @return a spliterator over the terms
+    */
+  public Spliterator.OfLong longSpliterator(long from, long to) {
+    if (from > to)
+      throw new IllegalArgumentException("Empty range is backwards: [" + from + ", " + to + ")");
+    checkRange(from, to);
+    
+    return new IndexSpliterator(from, to);
+  }
+  
+  //One past the last index of the sequence, capped for "infinite" ones
+  private long endIndex() {
+    return (isFinite() && stopIndex < Long.MAX_VALUE) ? stopIndex + 1 : Long.MAX_VALUE;
+  }
+  
+  private void checkRange(long from, long to) {
+    if (from < startIndex)
+      throw new IllegalArgumentException("Index " + from + " is before the start of the sequence, " + startIndex);
+    if (isFinite() && to - 1 > stopIndex)
+      throw new IllegalArgumentException("Index " + (to - 1) + " is past the end of the sequence, " + stopIndex);
+  }
+  
+  private class IndexSpliterator implements Spliterator.OfLong {
+    private long from;
+    private final long to;
+    
+    IndexSpliterator(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+    
+    public boolean tryAdvance(LongConsumer action) {
+      if (from >= to) return false;
+      
+      action.accept(getLong(from++));
+      return true;
+    }
+    
+    public void forEachRemaining(LongConsumer action) {
+      long[] buf = new long[(int) Math.min(CHUNK, to - from)];
+      while (from < to) {
+        if (to - from < buf.length) buf = new long[(int) (to - from)];
+        
+        fill(from, buf);
+        from += buf.length;
+        for (long v : buf) action.accept(v);
+      }
+    }
+    
+    public Spliterator.OfLong trySplit() {
+      long size = to - from;
+      if (!isIndependent() || size < 2 * CHUNK) return null;
+      
+      //The front half goes to the new spliterator, keeping encounter order
+      long mid = from + (size >>> 1);
+      IndexSpliterator prefix = new IndexSpliterator(from, mid);
+      from = mid;
+      return prefix;
+    }
+    
+    public long estimateSize() {
+      return to - from;
+    }
+    
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    }
+  }
+  
   private class SequenceIterator implements Iterator<T> {
     private boolean overflow = false;
     private long currIndex;
@@ -0,0 +1,246 @@
+package math;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+  * A file holding the sieve results for every integer up to a limit: the bitset of odd primes (as from
+  * {@link PrimeSieve#oddPrimeBits(long)}), the list of primes, and a {@link SmallestPrimeFactorTable}.
+  * <p>
+  * {@link #write(Path, int)} sieves once and saves everything; {@link #open(Path)} maps the file read-only, so
+  * loading takes no sieving and no heap, and every process that opens the same file shares one copy of it in the
+  * page cache.  The views handed out read straight from the mapping.
+  * <p>
+  * The format is little-endian: a {@value #HEADER_BYTES}-byte header, then the three sections, each starting on a
+  * 64-byte boundary.  The header holds a magic number, the format {@link #VERSION}, the limit, the offset, length
+  * and CRC-32C of each section, and finally a CRC-32C of the header itself.  A file from a different version is
+  * rejected rather than guessed at.
+  * <p>
+  * Mapped files can't be unmapped explicitly; the mapping lasts until the views are garbage collected.
+  */
+public final class SieveFile {
+  /**
+    * The version of the format that this class reads and writes.
+    */
+  public static final int VERSION = 1;
+
+  /**
+    * The largest limit a file can hold.  The smallest prime factor section takes about N bytes, and each section
+    * must fit in one buffer and one mapping, both capped at 2 GiB.
+    */
+  public static final int MAX_LIMIT = Integer.MAX_VALUE - 64;
+
+  private static final long MAGIC = 0x564549534854414DL; //"MATHSIEV", read little-endian
+  private static final int HEADER_BYTES = 128;
+  private static final int ALIGNMENT = 64;
+
+  //Header layout: byte offsets of each field
+  private static final int VERSION_AT = 8, HEADER_LENGTH_AT = 12, LIMIT_AT = 16;
+  private static final int BITS_AT = 24, PRIMES_AT = 40, SPF_AT = 56; //Each: long offset, int length, int CRC
+  private static final int HEADER_CRC_AT = HEADER_BYTES - 4;
+
+  private final int limit;
+  private final LongBuffer bits;
+  private final IntBuffer primes;
+  private final CharBuffer spf;
+
+  private SieveFile(int limit, LongBuffer bits, IntBuffer primes, CharBuffer spf) {
+    this.limit = limit;
+    this.bits = bits;
+    this.primes = primes;
+    this.spf = spf;
+  }
+
+  /**
+    * Sieves up to N and writes the results to a file, replacing it atomically: the data goes to a temporary file
+    * in the same directory, which is then moved into place, so a reader never sees a partial file.
+    * <p>
+    * The file takes about \(1.3N\) bytes, mostly for the smallest prime factors, and each section is assembled on
+    * the heap before it's written.
+    * @param path where to write the file
+    * @param N the (inclusive) upper limit; positive, and at most {@link #MAX_LIMIT}
+    * @throws IOException if the file can't be written
+    */
+  public static void write(Path path, int N) throws IOException {
+    if (N < 1 || N > MAX_LIMIT)
+      throw new IllegalArgumentException("Limit must be in [1, " + MAX_LIMIT + "]: " + N);
+
+    long[] bits = PrimeSieve.parallelOddPrimeBits(N);
+    int[] primes = PrimeSieve.primes(N);
+    CharBuffer spf = new SmallestPrimeFactorTable(N).entries();
+    int spfChars = spf.remaining();
+
+    //Lay out the sections
+    long bitsAt = HEADER_BYTES;
+    long primesAt = align(bitsAt + 8L * bits.length);
+    long spfAt = align(primesAt + 4L * primes.length);
+
+    ByteBuffer bitsBytes = ByteBuffer.allocate(8 * bits.length).order(ByteOrder.LITTLE_ENDIAN);
+    bitsBytes.asLongBuffer().put(bits);
+    ByteBuffer primeBytes = ByteBuffer.allocate(4 * primes.length).order(ByteOrder.LITTLE_ENDIAN);
+    primeBytes.asIntBuffer().put(primes);
+    ByteBuffer spfBytes = ByteBuffer.allocate(2 * spfChars).order(ByteOrder.LITTLE_ENDIAN);
+    spfBytes.asCharBuffer().put(spf);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putLong(0, MAGIC);
+    header.putInt(VERSION_AT, VERSION);
+    header.putInt(HEADER_LENGTH_AT, HEADER_BYTES);
+    header.putLong(LIMIT_AT, N);
+    putSection(header, BITS_AT, bitsAt, bits.length, bitsBytes);
+    putSection(header, PRIMES_AT, primesAt, primes.length, primeBytes);
+    putSection(header, SPF_AT, spfAt, spfChars, spfBytes);
+    header.putInt(HEADER_CRC_AT, crc(header.duplicate().limit(HEADER_CRC_AT)));
+
+    Path dir = path.toAbsolutePath().getParent();
+    Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        writeFully(ch, header, 0);
+        writeFully(ch, bitsBytes, bitsAt);
+        writeFully(ch, primeBytes, primesAt);
+        writeFully(ch, spfBytes, spfAt);
+        ch.force(true);
+      }
+
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+    * Maps a file written by {@link #write(Path, int)}, checking its header and the checksum of every section.
+    * @param path the file
+    * @return the mapped file
+    * @throws IOException if the file can't be read, or isn't a valid file of this version
+    */
+  public static SieveFile open(Path path) throws IOException {
+    return open(path, true);
+  }
+
+  /**
+    * Maps a file written by {@link #write(Path, int)}.  The header is always checked; checking the sections means
+    * reading the whole file, which is the one cost of loading that grows with the limit.
+    * @param path the file
+    * @param verify whether to check the checksum of every section
+    * @return the mapped file
+    * @throws IOException if the file can't be read, or isn't a valid file of this version
+    */
+  public static SieveFile open(Path path, boolean verify) throws IOException {
+    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (size < HEADER_BYTES) throw new IOException(path + " is too short to be a sieve file");
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining()) {
+        if (ch.read(header, header.position()) < 0) throw new IOException(path + " ended early");
+      }
+      header.flip();
+
+      if (header.getLong(0) != MAGIC) throw new IOException(path + " isn't a sieve file");
+      if (header.getInt(VERSION_AT) != VERSION)
+        throw new IOException(path + " has format version " + header.getInt(VERSION_AT) + "; expected " + VERSION);
+      if (header.getInt(HEADER_CRC_AT) != crc(header.duplicate().limit(HEADER_CRC_AT)))
+        throw new IOException(path + " has a corrupt header");
+
+      long N = header.getLong(LIMIT_AT);
+      if (N < 1 || N > MAX_LIMIT) throw new IOException(path + " has an invalid limit: " + N);
+
+      //The lengths follow from the limit; check them before trusting the offsets
+      int words = (int) (((N >>> 1) + 64) >>> 6), spfChars = (int) (N >>> 1) + 1;
+      if (header.getInt(BITS_AT + 8) != words || header.getInt(SPF_AT + 8) != spfChars)
+        throw new IOException(path + " has sections that don't match its limit");
+
+      ByteBuffer bits = map(ch, header, BITS_AT, 8, size, verify, path);
+      ByteBuffer primes = map(ch, header, PRIMES_AT, 4, size, verify, path);
+      ByteBuffer spf = map(ch, header, SPF_AT, 2, size, verify, path);
+
+      return new SieveFile((int) N, bits.asLongBuffer(), primes.asIntBuffer(), spf.asCharBuffer());
+    }
+  }
+
+  /**
+    * @return the limit up to which the file holds every prime
+    */
+  public int limit() {
+    return limit;
+  }
+
+  /**
+    * @return a read-only view of the odd primes up to the limit, laid out as by {@link PrimeSieve#oddPrimeBits(long)}
+    */
+  public LongBuffer oddPrimeBits() {
+    return bits.duplicate();
+  }
+
+  /**
+    * @return a read-only view of the primes up to the limit, in order
+    */
+  public IntBuffer primes() {
+    return primes.duplicate();
+  }
+
+  /**
+    * @return a new prime table that reads the primes up to the limit from the file, and grows on the heap beyond it
+    */
+  public PrimeTable primeTable() {
+    return new PrimeTable(primes.duplicate(), limit, PrimeTable.DEFAULT_MAX_BYTES);
+  }
+
+  /**
+    * @return a smallest prime factor table up to the limit that reads from the file
+    */
+  public SmallestPrimeFactorTable smallestPrimeFactorTable() {
+    return new SmallestPrimeFactorTable(limit, spf.duplicate());
+  }
+
+  //Maps the section whose header entry starts at field, after checking that it lies inside the file
+  private static ByteBuffer map(FileChannel ch, ByteBuffer header, int field, int width, long size, boolean verify,
+                                Path path) throws IOException {
+    long offset = header.getLong(field);
+    long bytes = (long) width * header.getInt(field + 8);
+    if (header.getInt(field + 8) < 0 || offset < HEADER_BYTES || offset > size || bytes > size - offset)
+      throw new IOException(path + " is truncated or has a corrupt section table");
+
+    MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+    ByteBuffer retVal = mapped.order(ByteOrder.LITTLE_ENDIAN);
+    if (verify && crc(retVal.duplicate()) != header.getInt(field + 12))
+      throw new IOException(path + " failed its checksum");
+
+    return retVal;
+  }
+
+  private static void putSection(ByteBuffer header, int field, long offset, int length, ByteBuffer data) {
+    header.putLong(field, offset);
+    header.putInt(field + 8, length);
+    header.putInt(field + 12, crc(data.duplicate()));
+  }
+
+  private static int crc(ByteBuffer b) {
+    CRC32C crc = new CRC32C();
+    crc.update(b);
+    return (int) crc.getValue();
+  }
+
+  private static void writeFully(FileChannel ch, ByteBuffer b, long position) throws IOException {
+    b = b.duplicate();
+    while (b.hasRemaining()) position += ch.write(b, position);
+  }
+
+  private static long align(long offset) {
+    return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+  }
+}
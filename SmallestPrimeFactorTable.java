@@ -0,0 +1,374 @@
+package math;
+
+import java.nio.CharBuffer;
+
+/**
+  * A table of the smallest prime factor of every integer up to a limit, for fast repeated factorization.
+  * <p>
+  * The table is built with a linear sieve in \(\mathcal{O}(N)\) time.  Only odd integers are stored, and
+  * primes are stored as 0, so every entry is a prime below \(\sqrt{N} \lt 2^{16}\) and fits in a char: the
+  * whole table takes N bytes.  The entries are held in a {@link CharBuffer}, so a table can also be loaded from a
+  * {@link SieveFile} without copying it onto the heap.  After that, factoring any \(n \le N\) takes \(\mathcal{O}(\lg n)\) time and
+  * allocates nothing.
+  * <p>
+  * The range functions compute a multiplicative function for a whole window at once.  Writing
+  * \(n = p^e m\) with \(p\) the smallest prime factor of \(n\), each value is built from the already computed
+  * value at \(m\), so the window is filled in a single pass.
+  */
+public final class SmallestPrimeFactorTable {
+  /**
+    * No int has more than this many distinct prime factors (\(2 \cdot 3 \cdots 23 = 223092870\)).
+    */
+  public static final int MAX_DISTINCT_FACTORS = 9;
+
+  /**
+    * No int has more than this many prime factors, counted with multiplicity (\(2^{30}\)).
+    */
+  public static final int MAX_FACTORS = 30;
+
+  private final int limit;
+  private final CharBuffer spf; //spf.get(n >>> 1) is the smallest prime factor of odd n, or 0 if n is prime
+
+  /**
+    * Builds the table with a linear sieve.
+    * @param N the (inclusive) upper limit
+    */
+  public SmallestPrimeFactorTable(int N) {
+    if (N < 1) throw new IllegalArgumentException("Limit must be positive: " + N);
+
+    this.limit = N;
+    char[] spf = new char[(N >>> 1) + 1];
+
+    //Only primes up to sqrt(N) are ever used to mark a composite
+    int root = (int) NumberTheory.isqrt(N);
+    int[] primes = new int[PrimeSieve.estimateCount(root)];
+    int ct = 0;
+
+    for (int i = 3; i <= N && i > 0; i += 2) { //i > 0 guards the overflow past Integer.MAX_VALUE
+      int f = spf[i >>> 1];
+      if (f == 0) { //i is prime
+        f = i;
+        if (i <= root) primes[ct++] = i;
+      }
+
+      //Each odd composite p*i is marked exactly once, by its smallest prime factor p
+      for (int j = 0; j < ct; j++) {
+        int p = primes[j];
+        if (p > f || (long) p * i > N) break;
+        spf[(p * i) >>> 1] = (char) p;
+      }
+    }
+
+    this.spf = CharBuffer.wrap(spf);
+  }
+
+  /**
+    * Wraps entries that were already computed, as written by {@link #entries()}.
+    * @param N the (inclusive) upper limit
+    * @param spf the entries; \(\lfloor N/2 \rfloor + 1\) of them, from the start of the buffer
+    */
+  SmallestPrimeFactorTable(int N, CharBuffer spf) {
+    if (N < 1) throw new IllegalArgumentException("Limit must be positive: " + N);
+    if (spf.limit() != (N >>> 1) + 1)
+      throw new IllegalArgumentException("A table up to " + N + " needs " + ((N >>> 1) + 1) + " entries, not " + spf.limit());
+
+    this.limit = N;
+    this.spf = spf;
+  }
+
+  /**
+    * @return the largest integer covered by this table
+    */
+  public int limit() {
+    return limit;
+  }
+
+  /**
+    * @return a read-only view of the entries, indexed by \(n/2\) for odd n; for {@link SieveFile}
+    */
+  CharBuffer entries() {
+    return spf.asReadOnlyBuffer();
+  }
+
+  /**
+    * @param n an integer with \(2 \le n \le\) {@link #limit()}
+    * @return the smallest prime factor of n
+    */
+  public int smallestPrimeFactor(int n) {
+    check(n);
+    return spf(n);
+  }
+
+  /**
+    * @param n an integer with \(0 \le n \le\) {@link #limit()}
+    * @return true iff n is prime
+    */
+  public boolean isPrime(int n) {
+    if (n < 2) return false;
+    check(n);
+    return (n & 1) == 0 ? n == 2 : spf.get(n >>> 1) == 0;
+  }
+
+  /**
+    * Factors n, accounting for multiplicity, without allocating.
+    * @param n an integer with \(1 \le n \le\) {@link #limit()}
+    * @param factors receives the prime factors in non-decreasing order; needs room for {@link #MAX_FACTORS}
+    * @return the number of factors written
+    */
+  public int factor(int n, int[] factors) {
+    check(n);
+
+    int ct = 0;
+    while (n > 1) {
+      int p = spf(n);
+      factors[ct++] = p;
+      n /= p;
+    }
+
+    return ct;
+  }
+
+  /**
+    * Factors n into distinct primes and their exponents, without allocating.
+    * @param n an integer with \(1 \le n \le\) {@link #limit()}
+    * @param primes receives the distinct prime factors in increasing order; needs room for {@link #MAX_DISTINCT_FACTORS}
+    * @param exponents receives the exponent of each prime; needs room for {@link #MAX_DISTINCT_FACTORS}
+    * @return the number of distinct prime factors
+    */
+  public int factor(int n, int[] primes, int[] exponents) {
+    check(n);
+
+    int ct = 0;
+    while (n > 1) {
+      int p = spf(n), e = 0;
+      do {
+        n /= p;
+        e++;
+      } while (n % p == 0);
+
+      primes[ct] = p;
+      exponents[ct++] = e;
+    }
+
+    return ct;
+  }
+
+  /**
+    * Euler's totient: the number of integers between 1 and n that are coprime to n.
+    * @param n an integer with \(1 \le n \le\) {@link #limit()}
+    * @return \(\varphi(n)\)
+    */
+  public int totient(int n) {
+    check(n);
+
+    int retVal = n;
+    while (n > 1) {
+      int p = spf(n);
+      retVal = retVal / p * (p - 1);
+      do n /= p; while (n % p == 0);
+    }
+
+    return retVal;
+  }
+
+  /**
+    * The Mobius function: 0 if n has a square factor, otherwise \((-1)^k\) for k distinct prime factors.
+    * @param n an integer with \(1 \le n \le\) {@link #limit()}
+    * @return \(\mu(n)\)
+    */
+  public int mobius(int n) {
+    check(n);
+
+    int retVal = 1;
+    while (n > 1) {
+      int p = spf(n);
+      n /= p;
+      if (n % p == 0) return 0;
+      retVal = -retVal;
+    }
+
+    return retVal;
+  }
+
+  /**
+    * @param n an integer with \(1 \le n \le\) {@link #limit()}
+    * @return \(d(n)\), the number of divisors of n
+    */
+  public int divisorCount(int n) {
+    check(n);
+
+    int retVal = 1;
+    while (n > 1) {
+      int p = spf(n), e = 0;
+      do {
+        n /= p;
+        e++;
+      } while (n % p == 0);
+
+      retVal *= e + 1;
+    }
+
+    return retVal;
+  }
+
+  /**
+    * The divisor function \(\sigma_x(n)\), the sum of the xth powers of the divisors of n.
+    * <p>
+    * Matches {@link NumberTheory#divisorFunction(int, int)}.  Overflow is not checked.
+    * @param x the divisor function parameter; non-negative
+    * @param n an integer with \(1 \le n \le\) {@link #limit()}
+    * @return \(\sigma_x(n)\)
+    */
+  public long divisorSigma(int x, int n) {
+    check(n);
+
+    long retVal = 1;
+    while (n > 1) {
+      int p = spf(n);
+      long px = pow(p, x), term = 1, pk = 1;
+      do {
+        n /= p;
+        pk *= px;
+        term += pk;
+      } while (n % p == 0);
+
+      retVal *= term;
+    }
+
+    return retVal;
+  }
+
+  /**
+    * Computes \(\varphi(n)\) for every n in \([lo, hi]\) in one pass.
+    * @param lo the first integer; at least 1
+    * @param hi the last integer; at most {@link #limit()}
+    * @return an array whose ith entry is \(\varphi(lo + i)\)
+    */
+  public long[] totientRange(int lo, int hi) {
+    long[] out = newRange(lo, hi);
+    totientRange(lo, hi, out, 0);
+    return out;
+  }
+
+  //As totientRange(lo, hi), but writes phi(lo + i) to out[at + i]; the range is assumed valid
+  void totientRange(int lo, int hi, long[] out, int at) {
+    if (lo == 1 && hi >= 1) out[at] = 1;
+
+    for (int n = Math.max(lo, 2); n <= hi && n > 0; n++) {
+      int p = spf(n), m = n / p;
+      long pe = 1; //p^(e-1)
+      while (m % p == 0) {
+        m /= p;
+        pe *= p;
+      }
+
+      long phiM = (m >= lo) ? out[at + m - lo] : totient(m);
+      out[at + n - lo] = phiM * pe * (p - 1);
+    }
+  }
+
+  /**
+    * Computes \(d(n)\), the number of divisors, for every n in \([lo, hi]\) in one pass.
+    * @param lo the first integer; at least 1
+    * @param hi the last integer; at most {@link #limit()}
+    * @return an array whose ith entry is \(d(lo + i)\)
+    */
+  public long[] divisorCountRange(int lo, int hi) {
+    long[] out = newRange(lo, hi);
+
+    for (int n = Math.max(lo, 2); n <= hi && n > 0; n++) {
+      int p = spf(n), m = n / p, e = 1;
+      while (m % p == 0) {
+        m /= p;
+        e++;
+      }
+
+      long dM = (m >= lo) ? out[m - lo] : divisorCount(m);
+      out[n - lo] = dM * (e + 1);
+    }
+
+    return out;
+  }
+
+  /**
+    * Computes \(\sigma_x(n)\) for every n in \([lo, hi]\) in one pass.  Overflow is not checked.
+    * @param x the divisor function parameter; non-negative
+    * @param lo the first integer; at least 1
+    * @param hi the last integer; at most {@link #limit()}
+    * @return an array whose ith entry is \(\sigma_x(lo + i)\)
+    */
+  public long[] divisorSigmaRange(int x, int lo, int hi) {
+    long[] out = newRange(lo, hi);
+
+    for (int n = Math.max(lo, 2); n <= hi && n > 0; n++) {
+      int p = spf(n), m = n / p;
+      long px = pow(p, x), pk = px, term = 1 + px;
+      while (m % p == 0) {
+        m /= p;
+        pk *= px;
+        term += pk;
+      }
+
+      long sM = (m >= lo) ? out[m - lo] : divisorSigma(x, m);
+      out[n - lo] = sM * term;
+    }
+
+    return out;
+  }
+
+  /**
+    * Computes \(\mu(n)\) for every n in \([lo, hi]\) in one pass.
+    * @param lo the first integer; at least 1
+    * @param hi the last integer; at most {@link #limit()}
+    * @return an array whose ith entry is \(\mu(lo + i)\)
+    */
+  public long[] mobiusRange(int lo, int hi) {
+    long[] out = newRange(lo, hi);
+    mobiusRange(lo, hi, out, 0);
+    return out;
+  }
+
+  //As mobiusRange(lo, hi), but writes mu(lo + i) to out[at + i]; the range is assumed valid
+  void mobiusRange(int lo, int hi, long[] out, int at) {
+    if (lo == 1 && hi >= 1) out[at] = 1;
+
+    for (int n = Math.max(lo, 2); n <= hi && n > 0; n++) {
+      int p = spf(n), m = n / p;
+      if (m % p == 0) {
+        out[at + n - lo] = 0;
+        continue;
+      }
+
+      long muM = (m >= lo) ? out[at + m - lo] : mobius(m);
+      out[at + n - lo] = -muM;
+    }
+  }
+
+  //Allocates the output for a range function, with f(1) = 1 filled in
+  private long[] newRange(int lo, int hi) {
+    if (lo < 1 || hi > limit || lo > hi + 1)
+      throw new IllegalArgumentException("Range [" + lo + ", " + hi + "] is outside of [1, " + limit + "]");
+
+    long[] out = new long[hi - lo + 1];
+    if (lo == 1 && hi >= 1) out[0] = 1;
+    return out;
+  }
+
+  //The smallest prime factor of n >= 2, without bounds checks
+  private int spf(int n) {
+    if ((n & 1) == 0) return 2;
+    int f = spf.get(n >>> 1);
+    return (f == 0) ? n : f;
+  }
+
+  private void check(int n) {
+    if (n < 1 || n > limit)
+      throw new IllegalArgumentException("Value " + n + " is outside of [1, " + limit + "]");
+  }
+
+  private static long pow(long p, int x) {
+    long retVal = 1;
+    for (int i = 0; i < x; i++) retVal *= p;
+    return retVal;
+  }
+}
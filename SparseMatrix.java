@@ -0,0 +1,355 @@
+package math;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import math.algebra.LongField;
+
+/**
+  * A sparse matrix over the integers modulo a prime, in compressed sparse row (CSR) form.
+  * <p>
+  * Only the nonzero entries are stored: their values and column indices, row by row, plus where each row starts.
+  * That's 12 bytes per nonzero and 4 per row, so matrices far too large for {@link ModularMatrix} fit easily.
+  * The transpose, which is the compressed sparse column form of the same matrix, comes from {@link #transpose()}.
+  * <p>
+  * The one operation the matrix supports quickly is multiplying a dense vector, so the solvers are black box
+  * methods built only from that.  {@link #solve(long[])} and {@link #nullVector()} use Wiedemann's algorithm: the
+  * sequence \(u^T A^i b\) for a random u satisfies the minimal polynomial of A on b, which Berlekamp-Massey recovers
+  * from \(2n\) terms; then that polynomial in A, applied to b, gives the answer.  That's \(\mathcal{O}(n)\)
+  * products, each \(\mathcal{O}(\text{nonzeros})\), and \(\mathcal{O}(n)\) extra memory.
+  * <p>
+  * A random projection can lose part of the minimal polynomial, with probability roughly \(n/p\).  Results are
+  * checked and the solvers retry with fresh randomness, but over very small fields such as GF(2) that failure
+  * rate is high and each retry costs a full run; for those, many attempts may be needed.
+  */
+public final class SparseMatrix {
+  private static final int ATTEMPTS = 16;               //Random restarts before the solvers give up
+  private static final int PARALLEL_NONZEROS = 1 << 16; //Products with fewer nonzeros stay on one thread
+
+  private final LongField field;
+  private final int rows, cols;
+  private final int[] rowStart; //Row i's entries are at [rowStart[i], rowStart[i+1])
+  private final int[] column;
+  private final long[] value;
+
+  /**
+    * Builds a matrix from its nonzero entries in coordinate form, in any order.  Entries at the same position are
+    * added together, and entries that come out zero aren't stored.
+    * @param field the field of the entries
+    * @param rows the number of rows
+    * @param cols the number of columns
+    * @param row the row of each entry
+    * @param col the column of each entry
+    * @param val the value of each entry; normalized into the field
+    */
+  public SparseMatrix(LongField field, int rows, int cols, int[] row, int[] col, long[] val) {
+    if (rows < 0 || cols < 0)
+      throw new IllegalArgumentException("Matrix dimensions must be non-negative: " + rows + "x" + cols);
+    if (row.length != col.length || col.length != val.length)
+      throw new IllegalArgumentException("Coordinate arrays have different lengths");
+
+    this.field = field;
+    this.rows = rows;
+    this.cols = cols;
+
+    //Counting sort by row
+    int[] start = new int[rows + 1];
+    for (int k = 0; k < row.length; k++) {
+      if (row[k] < 0 || row[k] >= rows || col[k] < 0 || col[k] >= cols)
+        throw new IllegalArgumentException("Entry (" + row[k] + ", " + col[k] + ") is outside the matrix");
+      start[row[k] + 1]++;
+    }
+    for (int i = 0; i < rows; i++) start[i+1] += start[i];
+
+    int[] next = Arrays.copyOf(start, rows);
+    int[] c = new int[row.length];
+    long[] v = new long[row.length];
+    for (int k = 0; k < row.length; k++) {
+      int at = next[row[k]]++;
+      c[at] = col[k];
+      v[at] = field.normalize(val[k]);
+    }
+
+    //Sort each row by column, merge duplicates and drop zeros, compacting in place
+    int nnz = 0;
+    for (int i = 0; i < rows; i++) {
+      int from = start[i], to = start[i+1];
+      sortByColumn(c, v, from, to);
+      start[i] = nnz;
+
+      for (int k = from; k < to; k++) {
+        if (nnz > start[i] && c[nnz-1] == c[k]) {
+          v[nnz-1] = field.add(v[nnz-1], v[k]);
+          continue;
+        }
+        if (nnz > start[i] && v[nnz-1] == 0) nnz--;
+        c[nnz] = c[k];
+        v[nnz] = v[k];
+        nnz++;
+      }
+      if (nnz > start[i] && v[nnz-1] == 0) nnz--;
+    }
+    start[rows] = nnz;
+
+    this.rowStart = start;
+    this.column = Arrays.copyOf(c, nnz);
+    this.value = Arrays.copyOf(v, nnz);
+  }
+
+  //Takes ownership of CSR arrays that are already sorted and reduced
+  private SparseMatrix(LongField field, int rows, int cols, long[] value, int[] column, int[] rowStart) {
+    this.field = field;
+    this.rows = rows;
+    this.cols = cols;
+    this.rowStart = rowStart;
+    this.column = column;
+    this.value = value;
+  }
+
+  /**
+    * @return the field of the entries
+    */
+  public LongField field() {
+    return field;
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public int columns() {
+    return cols;
+  }
+
+  /**
+    * @return the number of stored (nonzero) entries
+    */
+  public int nonzeros() {
+    return column.length;
+  }
+
+  /**
+    * Finds an entry by binary search within its row.
+    */
+  public long get(int i, int j) {
+    int k = Arrays.binarySearch(column, rowStart[i], rowStart[i+1], j);
+    return (k < 0) ? 0 : value[k];
+  }
+
+  /**
+    * @return the transpose; its rows are this matrix's columns, so this is also the CSC form of this matrix
+    */
+  public SparseMatrix transpose() {
+    int[] start = new int[cols + 1];
+    for (int c : column) start[c + 1]++;
+    for (int j = 0; j < cols; j++) start[j+1] += start[j];
+
+    //Walking the rows in order leaves each column's entries sorted by row
+    int[] next = Arrays.copyOf(start, cols);
+    int[] r = new int[column.length];
+    long[] v = new long[column.length];
+    for (int i = 0; i < rows; i++) {
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++) {
+        int at = next[column[k]]++;
+        r[at] = i;
+        v[at] = value[k];
+      }
+    }
+
+    return new SparseMatrix(field, cols, rows, v, r, start);
+  }
+
+  /**
+    * @param x a vector with one entry per column, in the field
+    * @return this times x
+    */
+  public long[] multiply(long[] x) {
+    long[] retVal = new long[rows];
+    multiply(x, retVal, ForkJoinPool.commonPool());
+    return retVal;
+  }
+
+  /**
+    * Multiplies a vector, splitting the rows into bands that run in parallel on the given pool when there are
+    * enough nonzeros to make it worthwhile.
+    * @param x a vector with one entry per column, in the field
+    * @param y receives this times x; one entry per row, and not the same array as x
+    * @param pool the pool to run on
+    */
+  public void multiply(long[] x, long[] y, ForkJoinPool pool) {
+    if (x.length != cols || y.length != rows)
+      throw new IllegalArgumentException("Vectors need " + cols + " and " + rows + " entries");
+
+    MultiplyTask task = new MultiplyTask(x, y, 0, rows);
+    if (column.length < PARALLEL_NONZEROS) task.compute();
+    else pool.invoke(task);
+  }
+
+  /**
+    * Solves \(Ax = b\) for a square, nonsingular A, with Wiedemann's algorithm.
+    * @param b a vector with one entry per row, in the field
+    * @return the unique solution x
+    * @throws ArithmeticException if no solution turned up; the matrix is then very probably singular
+    */
+  public long[] solve(long[] b) {
+    checkSquare();
+    if (b.length != rows)
+      throw new IllegalArgumentException("Vector has " + b.length + " entries, not " + rows);
+
+    long[] x = new long[rows];
+    if (isZero(b)) return x;
+
+    SplittableRandom rng = new SplittableRandom();
+    long[] ax = new long[rows];
+    for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+      //f(A) b = 0 with f = sum f_k x^k and f_0 != 0 gives A^(-1) b = -(f_1 b + f_2 A b + ... + f_L A^(L-1) b) / f_0
+      long[] f = minimalPolynomial(b, rng);
+      int L = f.length - 1;
+      if (f[0] == 0) continue;
+
+      long[] coef = new long[L];
+      for (int k = 1; k <= L; k++) coef[k-1] = f[k];
+      combine(coef, b, x);
+
+      long scale = field.additiveInverseOf(field.multiplicativeInverseOf(f[0]));
+      for (int i = 0; i < rows; i++) x[i] = field.multiply(x[i], scale);
+
+      multiply(x, ax, ForkJoinPool.commonPool());
+      if (Arrays.equals(ax, b)) return x;
+    }
+
+    throw new ArithmeticException("No solution found; the matrix is probably singular");
+  }
+
+  /**
+    * Finds a nonzero vector x with \(Ax = 0\), for a square A, with Wiedemann's algorithm.
+    * @return a nonzero vector in the nullspace, or null if none turned up; the matrix is then very probably
+    *   nonsingular
+    */
+  public long[] nullVector() {
+    checkSquare();
+    if (rows == 0) return null;
+
+    SplittableRandom rng = new SplittableRandom();
+    long[] y = new long[rows];
+    for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+      long[] v = randomVector(rng);
+
+      //The minimal polynomial of A on v is x^t g(x) with g(0) != 0; then w = g(A) v has A^t w = 0
+      long[] f = minimalPolynomial(v, rng);
+      int t = 0;
+      while (t < f.length && f[t] == 0) t++;
+      if (t == 0) continue;
+
+      long[] w = new long[rows];
+      combine(Arrays.copyOfRange(f, t, f.length), v, w);
+
+      //The last nonzero vector in w, Aw, ..., A^t w is in the nullspace
+      for (int i = 0; i <= t && !isZero(w); i++) {
+        multiply(w, y, ForkJoinPool.commonPool());
+        if (isZero(y)) return w;
+
+        long[] tmp = w; w = y; y = tmp;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+    * Returns the minimal polynomial of A on v, as far as a random projection reveals it: Berlekamp-Massey on
+    * \(u^T A^i v\) for \(0 \le i \lt 2n\).
+    * @return the coefficients, lowest degree first; the last is 1
+    */
+  private long[] minimalPolynomial(long[] v, SplittableRandom rng) {
+    long[] u = randomVector(rng);
+    long[] s = new long[2 * rows];
+    long[] w = v.clone(), next = new long[rows];
+
+    for (int i = 0; i < s.length; i++) {
+      s[i] = field.dot(u, w);
+      if (i + 1 < s.length) {
+        multiply(w, next, ForkJoinPool.commonPool());
+        long[] tmp = w; w = next; next = tmp;
+      }
+    }
+
+    //The connection polynomial C(x) = 1 + c_1 x + ... + c_L x^L, reversed, is the minimal polynomial
+    long[] c = LinearRecurrence.connectionPolynomial(s, field);
+    long[] retVal = new long[c.length];
+    for (int k = 0; k < c.length; k++) retVal[k] = c[c.length - 1 - k];
+    return retVal;
+  }
+
+  //Sets out to sum_k coef[k] A^k v
+  private void combine(long[] coef, long[] v, long[] out) {
+    Arrays.fill(out, 0);
+    long[] w = v.clone(), next = new long[rows];
+
+    for (int k = 0; k < coef.length; k++) {
+      field.axpy(coef[k], w, out);
+      if (k + 1 < coef.length) {
+        multiply(w, next, ForkJoinPool.commonPool());
+        long[] tmp = w; w = next; next = tmp;
+      }
+    }
+  }
+
+  private long[] randomVector(SplittableRandom rng) {
+    long[] retVal = new long[rows];
+    for (int i = 0; i < rows; i++) retVal[i] = rng.nextLong(field.modulus());
+    return retVal;
+  }
+
+  private static boolean isZero(long[] v) {
+    for (long x : v) if (x != 0) return false;
+    return true;
+  }
+
+  private void checkSquare() {
+    if (rows != cols)
+      throw new IllegalArgumentException("Matrix isn't square: " + rows + "x" + cols);
+  }
+
+  //Insertion sort of one row by column; rows of a sparse matrix are short
+  private static void sortByColumn(int[] c, long[] v, int from, int to) {
+    for (int k = from + 1; k < to; k++) {
+      int ck = c[k];
+      long vk = v[k];
+      int j = k - 1;
+      for (; j >= from && c[j] > ck; j--) {
+        c[j+1] = c[j];
+        v[j+1] = v[j];
+      }
+      c[j+1] = ck;
+      v[j+1] = vk;
+    }
+  }
+
+  //Computes rows [from, to) of this times x, halving the band until it holds few enough nonzeros
+  @SuppressWarnings("serial") //Tasks are never serialized
+  private final class MultiplyTask extends RecursiveAction {
+    private final long[] x, y;
+    private final int from, to;
+
+    MultiplyTask(long[] x, long[] y, int from, int to) {
+      this.x = x;
+      this.y = y;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1 && rowStart[to] - rowStart[from] > PARALLEL_NONZEROS) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new MultiplyTask(x, y, from, mid), new MultiplyTask(x, y, mid, to));
+        return;
+      }
+
+      for (int i = from; i < to; i++) y[i] = field.dot(value, column, x, rowStart[i], rowStart[i+1]);
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package math;
+
+import java.util.function.LongUnaryOperator;
+
+/**
+  * Sums of arithmetic functions, \(\sum_{n \le x} f(n)\), in sublinear time.
+  * <p>
+  * The divisor sums use the Dirichlet hyperbola method, which needs only the \(\mathcal{O}(\sqrt{x})\) distinct
+  * values of \(\lfloor x/i \rfloor\).
+  * <p>
+  * The totient and Mobius sums use Du's sieve.  If \(f * g = h\) (Dirichlet convolution) and g, h have easy prefix
+  * sums, then \(F(v) = \sum_{n \le v} f(n)\) satisfies
+  * $$g(1) F(v) = H(v) - \sum_{d=2}^{v} g(d) F(\lfloor v/d \rfloor).$$
+  * Here g = 1, with \(\varphi * 1 = \mathrm{id}\) and \(\mu * 1 = \varepsilon\).  F is sieved directly (with a
+  * {@link SmallestPrimeFactorTable}) up to a limit s; every larger argument has the form \(\lfloor x/i \rfloor\),
+  * and those are filled in from the smallest up, each one's values stored in a primitive array indexed by i.
+  * <p>
+  * Ideally s is about \(x^{2/3}\), for \(\mathcal{O}(x^{2/3})\) time and memory.  It's capped at
+  * {@value #MAX_SIEVE} values, which x reaches near \(2.4 \cdot 10^{10}\), so the memory stays flat beyond that
+  * while the time grows a little faster.  But s can't go below \(\sqrt{x}\), so from about \(7 \cdot 10^{13}\) on
+  * the memory grows as \(\sqrt{x}\): about 9 bytes per sieved value, plus 8 per large argument, comes to 570 MB at
+  * the largest argument, {@link #MAX_ARGUMENT}, and the time grows as \(x^{3/4}\).
+  */
+public final class SummatoryFunctions {
+  /**
+    * The largest argument to the sums computed with Du's sieve, \(2^{50}\) (about \(1.1 \cdot 10^{15}\)).
+    */
+  public static final long MAX_ARGUMENT = 1L << 50;
+
+  private static final int MAX_SIEVE = 1 << 23;
+
+  private SummatoryFunctions() {}
+
+  /**
+    * @param x the upper limit (inclusive); at most {@link #MAX_ARGUMENT}
+    * @param m the modulus; positive
+    * @return \(\sum_{n \le x} \varphi(n) \bmod m\)
+    */
+  public static long totientSum(long x, long m) {
+    checkModulus(m);
+    checkArgument(x);
+    if (x < 1) return 0;
+
+    //prefix[n] = phi(n), then summed in place
+    int s = sieveLimit(x);
+    long[] prefix = new long[s + 1];
+    new SmallestPrimeFactorTable(s).totientRange(1, s, prefix, 1);
+    for (int n = 1; n <= s; n++) prefix[n] = addMod(prefix[n-1], prefix[n] % m, m);
+
+    return duSieve(x, prefix, v -> triangle(v, m), m);
+  }
+
+  /**
+    * The Mertens function.
+    * @param x the upper limit (inclusive); at most {@link #MAX_ARGUMENT}
+    * @return \(M(x) = \sum_{n \le x} \mu(n)\)
+    */
+  public static long mertens(long x) {
+    checkArgument(x);
+    if (x < 1) return 0;
+
+    int s = sieveLimit(x);
+    long[] prefix = new long[s + 1];
+    new SmallestPrimeFactorTable(s).mobiusRange(1, s, prefix, 1);
+    for (int n = 1; n <= s; n++) prefix[n] += prefix[n-1];
+
+    return duSieve(x, prefix, v -> 1, 0);
+  }
+
+  /**
+    * Sums the number of divisors, from \(\sum_{n \le x} d(n) = 2\sum_{i \le r} \lfloor x/i \rfloor - r^2\) with
+    * \(r = \lfloor \sqrt{x} \rfloor\).
+    * @param x the upper limit (inclusive)
+    * @param m the modulus; positive
+    * @return \(\sum_{n \le x} d(n) \bmod m\)
+    */
+  public static long divisorCountSum(long x, long m) {
+    checkModulus(m);
+    if (x < 1) return 0;
+
+    long r = NumberTheory.isqrt(x), retVal = 0;
+    for (long i = 1; i <= r; i++) retVal = addMod(retVal, (x / i) % m, m);
+
+    retVal = addMod(retVal, retVal, m);
+    return subtractMod(retVal, NumberTheory.mulMod(r, r, m), m);
+  }
+
+  /**
+    * Sums the sum of divisors, counting pairs \(ab \le x\) by their smaller element:
+    * \(\sum_{n \le x} \sigma(n) = \sum_{a \le r} a \lfloor x/a \rfloor + \sum_{b \le r} T(\lfloor x/b \rfloor) - r T(r)\)
+    * with \(r = \lfloor \sqrt{x} \rfloor\) and T the triangular numbers.
+    * @param x the upper limit (inclusive)
+    * @param m the modulus; positive
+    * @return \(\sum_{n \le x} \sigma(n) \bmod m\)
+    */
+  public static long divisorSigmaSum(long x, long m) {
+    checkModulus(m);
+    if (x < 1) return 0;
+
+    long r = NumberTheory.isqrt(x), retVal = 0;
+    for (long i = 1; i <= r; i++) {
+      long q = x / i;
+      retVal = addMod(retVal, NumberTheory.mulMod(i, q, m), m);
+      retVal = addMod(retVal, triangle(q, m), m);
+    }
+
+    return subtractMod(retVal, NumberTheory.mulMod(r, triangle(r, m), m), m);
+  }
+
+  /**
+    * Du's sieve with g = 1: F(v) = H(v) - sum_(d = 2)^v F(v/d).
+    * @param prefix F(0), ..., F(s) for some s with s^2 >= x
+    * @param h the prefix sums of h, reduced
+    * @param m the modulus, or 0 to work exactly
+    */
+  private static long duSieve(long x, long[] prefix, LongUnaryOperator h, long m) {
+    int s = prefix.length - 1;
+    if (x <= s) return prefix[(int) x];
+
+    //large[i] = F(x / i) for every i with x / i > s; filled for decreasing i, so increasing arguments
+    int count = (int) (x / (s + 1));
+    long[] large = new long[count + 1];
+
+    for (int i = count; i >= 1; i--) {
+      long v = x / i, acc = h.applyAsLong(v);
+
+      //d in [l, r] all share the quotient q = v / d
+      for (long l = 2, r; l <= v; l = r + 1) {
+        long q = v / l;
+        r = v / q;
+
+        long f = (q <= s) ? prefix[(int) q] : large[(int) (i * l)]; //v / l = x / (il)
+        if (m == 0) acc -= (r - l + 1) * f;
+        else acc = subtractMod(acc, NumberTheory.mulMod((r - l + 1) % m, f, m), m);
+      }
+
+      large[i] = acc;
+    }
+
+    return large[1];
+  }
+
+  //About x^(2/3), but at least sqrt(x) so that every quotient past it is some x / i, and at most MAX_SIEVE if possible
+  private static int sieveLimit(long x) {
+    long root = NumberTheory.isqrt(x);
+    long s = Math.min((long) Math.cbrt((double) x * x), Math.max(root, MAX_SIEVE));
+    return (int) Math.max(s, root);
+  }
+
+  //v(v + 1)/2 mod m, halving whichever factor is even first
+  private static long triangle(long v, long m) {
+    long a = v, b = v + 1;
+    if ((a & 1) == 0) a >>= 1;
+    else b >>= 1;
+
+    return NumberTheory.mulMod(a % m, b % m, m);
+  }
+
+  private static long addMod(long a, long b, long m) {
+    long s = a - (m - b);
+    return (s < 0) ? s + m : s;
+  }
+
+  private static long subtractMod(long a, long b, long m) {
+    long d = a - b;
+    return (d < 0) ? d + m : d;
+  }
+
+  private static void checkArgument(long x) {
+    if (x > MAX_ARGUMENT)
+      throw new IllegalArgumentException("Argument is beyond " + MAX_ARGUMENT + ": " + x);
+  }
+
+  private static void checkModulus(long m) {
+    if (m < 1)
+      throw new IllegalArgumentException("Modulus must be positive: " + m);
+  }
+}
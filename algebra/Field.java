@@ -47,6 +47,68 @@ public class Field<E> {
     return mulOp.inverseOf(a);
   }
   
+  /**
+    * Sets out[i] = a[i] + b[i] for each i in out
+    */
+  public void add(E[] a, E[] b, E[] out) {
+    for (int i = 0; i < out.length; i++)
+      out[i] = addOp.op(a[i], b[i]);
+  }
+  
+  /**
+    * Sets out[i] = a[i] * b[i] for each i in out
+    */
+  public void multiply(E[] a, E[] b, E[] out) {
+    for (int i = 0; i < out.length; i++)
+      out[i] = mulOp.op(a[i], b[i]);
+  }
+  
+  /**
+    * Sets y[i] = y[i] + c * x[i] for each i in y
+    */
+  public void axpy(E c, E[] x, E[] y) {
+    for (int i = 0; i < y.length; i++)
+      y[i] = addOp.op(y[i], mulOp.op(c, x[i]));
+  }
+  
+  /**
+    * @param a a non-empty array
+    * @param b an array at least as long as a
+    * @return the dot product of a and b
+    */
+  public E dot(E[] a, E[] b) {
+    if (a.length == 0)
+      throw new IllegalArgumentException("The field's zero is unknown, so the arrays can't be empty");
+    
+    E retVal = mulOp.op(a[0], b[0]);
+    for (int i = 1; i < a.length; i++)
+      retVal = addOp.op(retVal, mulOp.op(a[i], b[i]));
+    
+    return retVal;
+  }
+  
+  /**
+    * Inverts every element of a into out (a different array of the same length), with only one call to the
+    * multiplicative inverse (Montgomery's trick)
+    */
+  public void batchInverse(E[] a, E[] out) {
+    if (a == out || a.length != out.length)
+      throw new IllegalArgumentException("Batch inversion needs a separate output array of the same length");
+    if (a.length == 0) return;
+    
+    //out[i] holds the product of a[0..i]
+    out[0] = a[0];
+    for (int i = 1; i < a.length; i++)
+      out[i] = mulOp.op(out[i-1], a[i]);
+    
+    E inv = mulOp.inverseOf(out[a.length - 1]);
+    for (int i = a.length - 1; i > 0; i--) {
+      out[i] = mulOp.op(inv, out[i-1]);
+      inv = mulOp.op(inv, a[i]);
+    }
+    out[0] = inv;
+  }
+  
   /**
     * @return true iff this is the multiplicative identity
     */
@@ -0,0 +1,213 @@
+package math.algebra;
+
+import math.NumberTheory;
+
+/**
+  * The integers modulo a prime \(p \lt 2^{31}\), with int elements.
+  * <p>
+  * This is the primitive specialization of {@link Field}&lt;Integer&gt; for the usual case of a prime modulus.  The
+  * operations are written out directly rather than delegated to {@link GroupOperation}s, so a hot loop makes
+  * monomorphic calls that the JIT can inline, and nothing is boxed.
+  * <p>
+  * Elements are the canonical residues \(0, 1, \ldots, p-1\); the operations assume their inputs are canonical.
+  * Use {@link #normalize(long)} to bring anything else into range.
+  */
+public final class IntField {
+  private final int p;
+  private final long dotLimit; //A multiple of p^2 at most Long.MAX_VALUE - p^2, for lazy reduction in dot
+
+  /**
+    * @param p the modulus; assumed to be prime (undefined behavior if not)
+    */
+  public IntField(int p) {
+    if (p < 2)
+      throw new IllegalArgumentException("Provided modulus is too small: " + p);
+
+    this.p = p;
+    long p2 = (long) p * p;
+    this.dotLimit = p2 * ((Long.MAX_VALUE - p2) / p2);
+  }
+
+  /**
+    * @return the modulus
+    */
+  public int modulus() {
+    return p;
+  }
+
+  /**
+    * @return the canonical residue of a
+    */
+  public int normalize(long a) {
+    long retVal = a % p;
+    return (int) ((retVal < 0) ? retVal + p : retVal);
+  }
+
+  public int add(int a, int b) {
+    int retVal = a - (p - b); //a + b - p, without overflowing
+    return (retVal < 0) ? retVal + p : retVal;
+  }
+
+  public int subtract(int a, int b) {
+    int retVal = a - b;
+    return (retVal < 0) ? retVal + p : retVal;
+  }
+
+  public int multiply(int a, int b) {
+    return (int) ((long) a * b % p);
+  }
+
+  public int divide(int a, int b) {
+    return multiply(a, multiplicativeInverseOf(b));
+  }
+
+  public int additiveInverseOf(int a) {
+    return (a == 0) ? 0 : p - a;
+  }
+
+  public int multiplicativeInverseOf(int a) {
+    if (a == 0)
+      throw new ArithmeticException("Noninvertible element detected: " + a);
+    return (int) NumberTheory.modInverse(a, p);
+  }
+
+  /**
+    * @param a the base
+    * @param e the exponent; non-negative
+    * @return \(a^e\)
+    */
+  public int pow(int a, long e) {
+    long retVal = 1, base = a;
+
+    for (; e > 0; e >>= 1) {
+      if ((e & 1) == 1) retVal = retVal * base % p;
+      base = base * base % p;
+    }
+
+    return (int) (retVal % p);
+  }
+
+  /**
+    * Sets out[i] = a[i] + b[i].  The arrays must have the same length, and may alias.
+    */
+  public void add(int[] a, int[] b, int[] out) {
+    checkLengths(a.length, b.length, out.length);
+    for (int i = 0; i < out.length; i++) {
+      int s = a[i] - (p - b[i]);
+      out[i] = s + ((s >> 31) & p); //Branch-free, so the JIT can vectorize the loop
+    }
+  }
+
+  /**
+    * Sets out[i] = a[i] - b[i].  The arrays must have the same length, and may alias.
+    */
+  public void subtract(int[] a, int[] b, int[] out) {
+    checkLengths(a.length, b.length, out.length);
+    for (int i = 0; i < out.length; i++) {
+      int d = a[i] - b[i];
+      out[i] = d + ((d >> 31) & p);
+    }
+  }
+
+  /**
+    * Sets out[i] = a[i] * b[i].  The arrays must have the same length, and may alias.
+    */
+  public void multiply(int[] a, int[] b, int[] out) {
+    checkLengths(a.length, b.length, out.length);
+    for (int i = 0; i < out.length; i++)
+      out[i] = (int) ((long) a[i] * b[i] % p);
+  }
+
+  /**
+    * Sets y[i] = y[i] + c * x[i], with one remainder per element.
+    */
+  public void axpy(int c, int[] x, int[] y) {
+    checkLengths(x.length, y.length, y.length);
+    for (int i = 0; i < y.length; i++)
+      y[i] = (int) ((y[i] + (long) c * x[i]) % p);
+  }
+
+  /**
+    * Computes the dot product with lazy reduction: products are summed in a long, and the sum is only brought
+    * down (by a multiple of \(p^2\)) when it's about to overflow, so there's one remainder for the whole array.
+    * @return \(\sum_i a_i b_i\)
+    */
+  public int dot(int[] a, int[] b) {
+    checkLengths(a.length, b.length, b.length);
+    long sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += (long) a[i] * b[i];
+      if (sum >= dotLimit) sum -= dotLimit;
+    }
+
+    return (int) (sum % p);
+  }
+
+  /**
+    * Inverts every element with Montgomery's trick: one inverse and three multiplications per element.
+    * @param a the elements to invert; all nonzero
+    * @param out receives the inverses; the same length as a, and not the same array
+    */
+  public void batchInverse(int[] a, int[] out) {
+    checkLengths(a.length, out.length, out.length);
+    if (a == out)
+      throw new IllegalArgumentException("Batch inversion can't be done in place");
+
+    //out[i] holds the product of a[0..i-1]
+    long acc = 1;
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] == 0)
+        throw new ArithmeticException("Noninvertible element detected at index " + i);
+      out[i] = (int) acc;
+      acc = acc * a[i] % p;
+    }
+
+    //Walking back down, acc is the inverse of the product of a[0..i]
+    acc = multiplicativeInverseOf((int) acc);
+    for (int i = a.length - 1; i >= 0; i--) {
+      out[i] = (int) (acc * out[i] % p);
+      acc = acc * a[i] % p;
+    }
+  }
+
+  /**
+    * @return true iff this is the multiplicative identity
+    */
+  public boolean isOne(int a) {
+    return a == 1;
+  }
+
+  /**
+    * @return true iff this is the additive identity
+    */
+  public boolean isAdditiveIdentity(int a) {
+    return a == 0;
+  }
+
+  /**
+    * @return this field's addition, as a group operation
+    */
+  public IntGroupOperation additiveGroup() {
+    return new IntGroupOperation() {
+      public int op(int a, int b) { return add(a, b); }
+      public int inverseOf(int a) { return additiveInverseOf(a); }
+      public boolean isIdentity(int a) { return a == 0; }
+    };
+  }
+
+  /**
+    * @return this field's multiplication on the nonzero elements, as a group operation
+    */
+  public IntGroupOperation multiplicativeGroup() {
+    return new IntGroupOperation() {
+      public int op(int a, int b) { return multiply(a, b); }
+      public int inverseOf(int a) { return multiplicativeInverseOf(a); }
+      public boolean isIdentity(int a) { return a == 1; }
+    };
+  }
+
+  private static void checkLengths(int a, int b, int out) {
+    if (a != b || b != out)
+      throw new IllegalArgumentException("Array lengths differ: " + a + ", " + b + ", " + out);
+  }
+}
@@ -0,0 +1,14 @@
+package math.algebra;
+
+/**
+  * This interface describes an operation on int elements.
+  * <p>
+  * It is the primitive counterpart of {@link GroupOperation}&lt;Integer&gt;, so nothing is boxed.
+  */
+public interface IntGroupOperation {
+  public int op(int a, int b);
+  
+  public int inverseOf(int a);
+  
+  public boolean isIdentity(int a);
+}
\ No newline at end of file
@@ -0,0 +1,323 @@
+package math.algebra;
+
+import math.Montgomery;
+
+/**
+  * The integers modulo a prime \(p \lt 2^{62}\), with long elements.
+  * <p>
+  * This is the primitive specialization of {@link Field}&lt;Long&gt; for a prime modulus.  As with {@link IntField},
+  * the operations are written out directly, so hot loops make monomorphic calls and nothing is boxed.  Moduli
+  * below \(2^{31}\) multiply with one hardware remainder; larger ones use {@link Montgomery} reduction, so the
+  * 128-bit product is never divided.  Keeping p below \(2^{62}\) leaves a spare bit, so the sum of two elements
+  * never overflows.
+  * <p>
+  * Elements are the canonical residues \(0, 1, \ldots, p-1\); the operations assume their inputs are canonical.
+  * Use {@link #normalize(long)} to bring anything else into range.
+  */
+public final class LongField {
+  /**
+    * The largest supported modulus is just below this.
+    */
+  public static final long MAX_MODULUS = 1L << 62;
+
+  private final long p;
+  private final Montgomery mont; //Null when products fit in a long
+  private final long dotLimit;   //When mont is null, a multiple of p^2 at most Long.MAX_VALUE - p^2
+  private final long pInv;       //For odd p, p^(-1) mod 2^64
+  private final long rQuo, rRem; //2^64 = rQuo * p + rRem
+
+  /**
+    * @param p the modulus; assumed to be prime (undefined behavior if not)
+    */
+  public LongField(long p) {
+    if (p < 2 || p >= MAX_MODULUS)
+      throw new IllegalArgumentException("Provided modulus is out of range: " + p);
+
+    this.p = p;
+    this.mont = (p < (1L << 31)) ? null : new Montgomery(p);
+
+    long p2 = (mont == null) ? p * p : 1;
+    this.dotLimit = p2 * ((Long.MAX_VALUE - p2) / p2);
+
+    long inv = p;
+    for (int i = 0; i < 5; i++) inv *= 2 - p * inv;
+    this.pInv = inv;
+
+    long q = Long.divideUnsigned(-1L, p), r = Long.remainderUnsigned(-1L, p) + 1;
+    if (r == p) { q++; r = 0; }
+    this.rQuo = q;
+    this.rRem = r;
+  }
+
+  /**
+    * @return the modulus
+    */
+  public long modulus() {
+    return p;
+  }
+
+  /**
+    * @return the canonical residue of a
+    */
+  public long normalize(long a) {
+    long retVal = a % p;
+    return (retVal < 0) ? retVal + p : retVal;
+  }
+
+  public long add(long a, long b) {
+    long retVal = a + b - p;
+    return (retVal < 0) ? retVal + p : retVal;
+  }
+
+  public long subtract(long a, long b) {
+    long retVal = a - b;
+    return (retVal < 0) ? retVal + p : retVal;
+  }
+
+  public long multiply(long a, long b) {
+    return (mont == null) ? a * b % p : mont.mulMod(a, b);
+  }
+
+  public long divide(long a, long b) {
+    return multiply(a, multiplicativeInverseOf(b));
+  }
+
+  public long additiveInverseOf(long a) {
+    return (a == 0) ? 0 : p - a;
+  }
+
+  /**
+    * Computes the inverse with the extended Euclidean algorithm.
+    */
+  public long multiplicativeInverseOf(long a) {
+    if (a == 0)
+      throw new ArithmeticException("Noninvertible element detected: " + a);
+
+    //Only the coefficient of a is tracked: t_i * a = r_i (mod p)
+    long r0 = p, r1 = a, t0 = 0, t1 = 1;
+    while (r1 != 0) {
+      long q = r0 / r1, tmp;
+      tmp = r0 - q * r1; r0 = r1; r1 = tmp;
+      tmp = t0 - q * t1; t0 = t1; t1 = tmp;
+    }
+
+    return (t0 < 0) ? t0 + p : t0;
+  }
+
+  /**
+    * @param a the base
+    * @param e the exponent; non-negative
+    * @return \(a^e\)
+    */
+  public long pow(long a, long e) {
+    if (mont != null) return mont.modPow(a, e);
+
+    long retVal = 1;
+    for (; e > 0; e >>= 1) {
+      if ((e & 1) == 1) retVal = retVal * a % p;
+      a = a * a % p;
+    }
+
+    return retVal % p;
+  }
+
+  /**
+    * Sets out[i] = a[i] + b[i].  The arrays must have the same length, and may alias.
+    */
+  public void add(long[] a, long[] b, long[] out) {
+    checkLengths(a.length, b.length, out.length);
+    for (int i = 0; i < out.length; i++) {
+      long s = a[i] + b[i] - p;
+      out[i] = s + ((s >> 63) & p); //Branch-free, so the JIT can vectorize the loop
+    }
+  }
+
+  /**
+    * Sets out[i] = a[i] - b[i].  The arrays must have the same length, and may alias.
+    */
+  public void subtract(long[] a, long[] b, long[] out) {
+    checkLengths(a.length, b.length, out.length);
+    for (int i = 0; i < out.length; i++) {
+      long d = a[i] - b[i];
+      out[i] = d + ((d >> 63) & p);
+    }
+  }
+
+  /**
+    * Sets out[i] = a[i] * b[i].  The arrays must have the same length, and may alias.
+    */
+  public void multiply(long[] a, long[] b, long[] out) {
+    checkLengths(a.length, b.length, out.length);
+    if (mont == null) {
+      for (int i = 0; i < out.length; i++) out[i] = a[i] * b[i] % p;
+    }
+    else {
+      for (int i = 0; i < out.length; i++) out[i] = mont.mulMod(a[i], b[i]);
+    }
+  }
+
+  /**
+    * Sets y[i] = y[i] + c * x[i].
+    * <p>
+    * Uses Shoup's multiplication by a fixed operand: with \(c' = \lfloor c 2^{64} / p \rfloor\) computed once, the
+    * high word of \(c' x\) is within one of \(\lfloor cx/p \rfloor\), so each element costs one high and two low
+    * multiplications and no division.
+    */
+  public void axpy(long c, long[] x, long[] y) {
+    checkLengths(x.length, y.length, y.length);
+    axpy(c, x, y, 0, y.length);
+  }
+
+  /**
+    * Sets y[i] = y[i] + c * x[i] for \(from \le i \lt to\), as in {@link #axpy(long, long[], long[])}.
+    */
+  public void axpy(long c, long[] x, long[] y, int from, int to) {
+    if (p == 2) {
+      for (int i = from; i < to; i++) y[i] ^= c & x[i];
+      return;
+    }
+
+    long cShoup = shoup(c);
+    for (int i = from; i < to; i++) {
+      long xi = x[i];
+      long q = Math.multiplyHigh(cShoup, xi) + ((cShoup >> 63) & xi); //Unsigned, as xi < 2^62
+      long r = c * xi - q * p; //In [0, 2p)
+      r += y[i] - 2 * p;       //Now in [-2p, p)
+      r += (r >> 63) & p;
+      r += (r >> 63) & p;
+      y[i] = r;
+    }
+  }
+
+  /**
+    * Computes the dot product with lazy reduction.
+    * <p>
+    * For small moduli, products are summed in a long that is only brought down (by a multiple of \(p^2\)) when it's
+    * about to overflow.  Otherwise the full 128-bit products are summed into two words, keeping the high word below
+    * p (since \(2^{64} p \equiv 0\)), and there is a single Montgomery reduction at the end.
+    * @return \(\sum_i a_i b_i\)
+    */
+  public long dot(long[] a, long[] b) {
+    checkLengths(a.length, b.length, b.length);
+
+    if (mont == null) {
+      long sum = 0;
+      for (int i = 0; i < a.length; i++) {
+        sum += a[i] * b[i];
+        if (sum >= dotLimit) sum -= dotLimit;
+      }
+      return sum % p;
+    }
+
+    long hi = 0, lo = 0;
+    for (int i = 0; i < a.length; i++) {
+      long pLo = a[i] * b[i];
+      lo += pLo;
+      hi += Math.multiplyHigh(a[i], b[i]) + ((Long.compareUnsigned(lo, pLo) < 0) ? 1 : 0); //p < 2^62, so no sign fixup
+      if (hi >= p) hi -= p; //The high word of a product is below p, so one subtraction suffices
+    }
+
+    return mont.remainder(hi, lo);
+  }
+
+  /**
+    * The sparse dot product: \(\sum_k a_k x_{index_k}\) over \(from \le k \lt to\), reduced lazily as in
+    * {@link #dot(long[], long[])}.  This is one row of a compressed sparse row matrix times a dense vector.
+    */
+  public long dot(long[] a, int[] index, long[] x, int from, int to) {
+    if (mont == null) {
+      long sum = 0;
+      for (int k = from; k < to; k++) {
+        sum += a[k] * x[index[k]];
+        if (sum >= dotLimit) sum -= dotLimit;
+      }
+      return sum % p;
+    }
+
+    long hi = 0, lo = 0;
+    for (int k = from; k < to; k++) {
+      long ak = a[k], xk = x[index[k]];
+      long pLo = ak * xk;
+      lo += pLo;
+      hi += Math.multiplyHigh(ak, xk) + ((Long.compareUnsigned(lo, pLo) < 0) ? 1 : 0);
+      if (hi >= p) hi -= p;
+    }
+
+    return mont.remainder(hi, lo);
+  }
+
+  /**
+    * Inverts every element with Montgomery's trick: one inverse and three multiplications per element.
+    * @param a the elements to invert; all nonzero
+    * @param out receives the inverses; the same length as a, and not the same array
+    */
+  public void batchInverse(long[] a, long[] out) {
+    checkLengths(a.length, out.length, out.length);
+    if (a == out)
+      throw new IllegalArgumentException("Batch inversion can't be done in place");
+
+    //out[i] holds the product of a[0..i-1]
+    long acc = 1;
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] == 0)
+        throw new ArithmeticException("Noninvertible element detected at index " + i);
+      out[i] = acc;
+      acc = multiply(acc, a[i]);
+    }
+
+    //Walking back down, acc is the inverse of the product of a[0..i]
+    acc = multiplicativeInverseOf(acc);
+    for (int i = a.length - 1; i >= 0; i--) {
+      out[i] = multiply(acc, out[i]);
+      acc = multiply(acc, a[i]);
+    }
+  }
+
+  /**
+    * @return true iff this is the multiplicative identity
+    */
+  public boolean isOne(long a) {
+    return a == 1;
+  }
+
+  /**
+    * @return true iff this is the additive identity
+    */
+  public boolean isAdditiveIdentity(long a) {
+    return a == 0;
+  }
+
+  /**
+    * @return this field's addition, as a group operation
+    */
+  public LongGroupOperation additiveGroup() {
+    return new LongGroupOperation() {
+      public long op(long a, long b) { return add(a, b); }
+      public long inverseOf(long a) { return additiveInverseOf(a); }
+      public boolean isIdentity(long a) { return a == 0; }
+    };
+  }
+
+  /**
+    * @return this field's multiplication on the nonzero elements, as a group operation
+    */
+  public LongGroupOperation multiplicativeGroup() {
+    return new LongGroupOperation() {
+      public long op(long a, long b) { return multiply(a, b); }
+      public long inverseOf(long a) { return multiplicativeInverseOf(a); }
+      public boolean isIdentity(long a) { return a == 1; }
+    };
+  }
+
+  //floor(c 2^64 / p) for odd p and 0 <= c < p: c 2^64 = c rQuo p + c rRem, and c rRem / p divides exactly once its
+  //remainder is taken off, so the quotient comes from multiplying by the inverse of p mod 2^64
+  private long shoup(long c) {
+    long rem = (mont == null) ? c * rRem % p : mont.mulMod(c, rRem);
+    return c * rQuo + (c * rRem - rem) * pInv;
+  }
+
+  private static void checkLengths(int a, int b, int out) {
+    if (a != b || b != out)
+      throw new IllegalArgumentException("Array lengths differ: " + a + ", " + b + ", " + out);
+  }
+}
@@ -0,0 +1,14 @@
+package math.algebra;
+
+/**
+  * This interface describes an operation on long elements.
+  * <p>
+  * It is the primitive counterpart of {@link GroupOperation}&lt;Long&gt;, so nothing is boxed.
+  */
+public interface LongGroupOperation {
+  public long op(long a, long b);
+  
+  public long inverseOf(long a);
+  
+  public boolean isIdentity(long a);
+}
\ No newline at end of file
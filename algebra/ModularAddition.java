@@ -5,14 +5,14 @@ public class ModularAddition implements GroupOperation<Integer> {
   
   public ModularAddition(int n) {
     //Make sure the modulus is an acceptable value
-    if (n < 2 || n > Integer.MAX_VALUE / 2)
-      throw new IllegalArgumentException("Provided modulus is too large for integer addition");
+    if (n < 2)
+      throw new IllegalArgumentException("Provided modulus is too small for integer addition");
     
     this.n = n;
   }
   
   public Integer op(Integer a, Integer b) {
-    return normalize(a+b);
+    return normalize((long) a + b); //Sums are formed as longs, so any int modulus works
   }
   
   //Returns the additive inverse of an integer modulo n
@@ -32,10 +32,10 @@ public class ModularAddition implements GroupOperation<Integer> {
   }
   
   //Converts a given integer into its standard representation modulo p.
-  private int normalize(int a) {
-    int retVal = a % n;
+  private int normalize(long a) {
+    long retVal = a % n;
     if (retVal < 0) retVal += n;
     
-    return retVal;
+    return (int) retVal;
   }
 }
\ No newline at end of file
@@ -2,6 +2,11 @@ package math.algebra;
 
 import math.NumberTheory;
 
+/**
+  * Multiplication of the nonzero integers modulo a prime.
+  * <p>
+  * Every call boxes; for hot loops, use {@link IntField} or {@link LongField} instead.
+  */
 public class ModularMultiplication implements GroupOperation<Integer> {
   private int p;
   
@@ -10,19 +15,15 @@ public class ModularMultiplication implements GroupOperation<Integer> {
     */
   public ModularMultiplication(int p) {
     //Make sure the modulus is an acceptable value
-    if (p < 2 || p > Math.sqrt(Integer.MAX_VALUE))
-      throw new IllegalArgumentException("Provided modulus is too large for integer multiplication");
+    if (p < 2)
+      throw new IllegalArgumentException("Provided modulus is too small for integer multiplication");
     
     this.p = p;
   }
   
+  //Zero is accepted here, since Field.multiply uses this for every element; only inverseOf needs a unit
   public Integer op(Integer a, Integer b) {
-    if (!isValid(a))
-      throw new IllegalArgumentException("Noninvertible element detected: " + a);
-    if (!isValid(b))
-      throw new IllegalArgumentException("Noninvertible element detected: " + b);
-
-    return normalize(a*b);
+    return normalize((long) a * b); //Products are formed as longs, so any int modulus works
   }
   
   //Returns the additive inverse of an integer modulo p
@@ -37,11 +38,11 @@ public class ModularMultiplication implements GroupOperation<Integer> {
   }
   
   //Converts a given integer into its standard representation modulo p.
-  private int normalize(int a) {
-    int retVal = a % p;
+  private int normalize(long a) {
+    long retVal = a % p;
     if (retVal < 0) retVal += p;
     
-    return retVal;
+    return (int) retVal;
   }
   
   //Ensures this element is valid for this operation (has an inverse)
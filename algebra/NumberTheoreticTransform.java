@@ -0,0 +1,210 @@
+package math.algebra;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import math.NumberTheory;
+
+/**
+  * The number-theoretic transform (a discrete Fourier transform over \(\mathbb{Z}/p\)) for a prime
+  * \(p = c 2^k + 1 \lt 2^{31}\), which has roots of unity of every order up to \(2^k\).
+  * <p>
+  * The forward transform is decimation in frequency and the inverse is decimation in time, so neither needs a bit
+  * reversal: the spectrum sits in bit-reversed order, which doesn't matter for a pointwise product.  Twiddle factors
+  * are stored in 32-bit Montgomery form; a Montgomery product of an ordinary residue and a Montgomery-form twiddle
+  * is an ordinary residue, so the data itself never has to be converted.  The one stray factor of \(R^{-1}\) from
+  * the pointwise products is folded into the final division by the length.  Once the butterflies span no more
+  * than a cache block, the block is finished on its own before moving on, rather than sweeping the whole array
+  * once per stage.
+  * <p>
+  * Instances are immutable apart from a table of twiddles that grows on demand, and are safe to share between
+  * threads; {@link #forPrime(int)} hands out one per prime.
+  */
+final class NumberTheoreticTransform {
+  private static final ConcurrentHashMap<Integer, NumberTheoreticTransform> shared =
+    new ConcurrentHashMap<Integer, NumberTheoreticTransform>();
+
+  private static final int CACHE_BLOCK = 1 << 14; //Ints per block that's transformed while it stays in cache
+
+  private final int p;
+  private final int maxLength; //The largest power of 2 dividing p - 1
+  private final int g;         //A primitive root mod p
+  private final int nInv;      //-p^(-1) mod 2^32
+  private final long r2;       //2^64 mod p
+
+  //Twiddles in Montgomery form, for every stage up to the current length: for half-length h, roots[h + j] holds
+  //w^j and invRoots[h + j] holds w^(-j), with w of order 2h
+  private volatile int[][] tables = { new int[1], new int[1] };
+
+  /**
+    * @param p an odd prime below \(2^{31}\); assumed to be prime (undefined behavior if not)
+    */
+  NumberTheoreticTransform(int p) {
+    if (p < 3 || (p & 1) == 0)
+      throw new IllegalArgumentException("No transform of any length modulo " + p);
+
+    this.p = p;
+    this.maxLength = Integer.lowestOneBit(p - 1);
+    this.g = primitiveRoot(p);
+
+    int inv = p;
+    for (int i = 0; i < 4; i++) inv *= 2 - p * inv;
+    this.nInv = -inv;
+    this.r2 = ((1L << 32) % p) * ((1L << 32) % p) % p;
+  }
+
+  /**
+    * @return the shared transform for the prime p, creating it on first use
+    */
+  static NumberTheoreticTransform forPrime(int p) {
+    return shared.computeIfAbsent(p, NumberTheoreticTransform::new);
+  }
+
+  /**
+    * @return true iff there's a transform of the given power-of-2 length modulo p
+    */
+  static boolean supports(int p, int length) {
+    return p > 2 && (p & 1) == 1 && Integer.lowestOneBit(p - 1) >= length;
+  }
+
+  /**
+    * @return the prime
+    */
+  int modulus() {
+    return p;
+  }
+
+  /**
+    * @return the largest transform length
+    */
+  int maxLength() {
+    return maxLength;
+  }
+
+  /**
+    * The cyclic convolution of two vectors of residues, both of the same power-of-2 length; the result
+    * overwrites a, and b is left holding its transform.
+    */
+  void convolve(int[] a, int[] b) {
+    int n = a.length;
+    forward(a);
+    if (b != a) forward(b);
+
+    for (int i = 0; i < n; i++) a[i] = reduce((long) a[i] * b[i]);
+    inverse(a);
+  }
+
+  /**
+    * Transforms a, whose length is a power of 2 up to {@link #maxLength()}, in place; the output is in bit-reversed
+    * order.
+    */
+  void forward(int[] a) {
+    int n = a.length;
+    int[] roots = tables(n)[0];
+
+    //Stages spanning more than a cache block are full passes; after those, each block is transformed on its own
+    int block = Math.min(n, CACHE_BLOCK);
+    for (int h = n >> 1; h >= block; h >>= 1) forwardStage(a, roots, h, 0, n);
+    for (int from = 0; from < n; from += block)
+      for (int h = block >> 1; h >= 1; h >>= 1) forwardStage(a, roots, h, from, from + block);
+  }
+
+  /**
+    * Undoes {@link #forward(int[])} on a spectrum whose pointwise products were taken with
+    * {@link #convolve(int[], int[])}'s reduction: the input is in bit-reversed order and the output is divided by
+    * the length, and by the Montgomery factor that the pointwise products left behind.
+    */
+  void inverse(int[] a) {
+    int n = a.length;
+    int[] invRoots = tables(n)[1];
+
+    //The reverse order: each cache block on its own first, then full passes
+    int block = Math.min(n, CACHE_BLOCK);
+    for (int from = 0; from < n; from += block)
+      for (int h = 1; h < block; h <<= 1) inverseStage(a, invRoots, h, from, from + block);
+    for (int h = block; h < n; h <<= 1) inverseStage(a, invRoots, h, 0, n);
+
+    //Multiplying by n^(-1) R^2 in Montgomery form takes off both n and the R^(-1) from the pointwise products
+    long scale = NumberTheory.modInverse(n, p) * r2 % p;
+    for (int i = 0; i < n; i++) a[i] = reduce(a[i] * scale);
+  }
+
+  //One decimation-in-frequency stage with half-length h over a[from, to)
+  private void forwardStage(int[] a, int[] roots, int h, int from, int to) {
+    for (int i = from; i < to; i += 2 * h) {
+      for (int j = i, k = i + h, r = h; j < i + h; j++, k++, r++) {
+        int u = a[j], v = a[k];
+        int s = u - (p - v);
+        int d = u - v;
+        a[j] = s + ((s >> 31) & p);
+        a[k] = reduce((long) (d + ((d >> 31) & p)) * roots[r]);
+      }
+    }
+  }
+
+  //One decimation-in-time stage with half-length h over a[from, to), with the inverse twiddles
+  private void inverseStage(int[] a, int[] invRoots, int h, int from, int to) {
+    for (int i = from; i < to; i += 2 * h) {
+      for (int j = i, k = i + h, r = h; j < i + h; j++, k++, r++) {
+        int u = a[j], v = reduce((long) a[k] * invRoots[r]);
+        int s = u - (p - v);
+        int d = u - v;
+        a[j] = s + ((s >> 31) & p);
+        a[k] = d + ((d >> 31) & p);
+      }
+    }
+  }
+
+  //Montgomery reduction with R = 2^32: t R^(-1) mod p for 0 <= t < p 2^32
+  private int reduce(long t) {
+    long m = ((int) t * nInv) & 0xFFFFFFFFL;
+    int r = (int) ((t + m * p) >>> 32) - p; //(t + mp)/R is below 2p, and the sum can't carry past 2^64 as p < 2^31
+    return r + ((r >> 31) & p);
+  }
+
+  //The twiddle tables, extended to cover transforms of length n
+  private int[][] tables(int n) {
+    if (n > maxLength)
+      throw new IllegalArgumentException("No transform of length " + n + " modulo " + p);
+
+    int[][] t = tables;
+    if (t[0].length >= n) return t;
+
+    synchronized (this) {
+      t = tables;
+      if (t[0].length >= n) return t;
+
+      int[] roots = Arrays.copyOf(t[0], n), invRoots = Arrays.copyOf(t[1], n);
+      for (int h = t[0].length; h < n; h <<= 1) {
+        long w = NumberTheory.modPow(g, (p - 1) / (2L * h), p), wInv = NumberTheory.modInverse(w, p);
+        long x = toMontgomery(1), y = x;
+        long wm = toMontgomery(w), wInvM = toMontgomery(wInv);
+        for (int j = 0; j < h; j++) {
+          roots[h+j] = (int) x;
+          invRoots[h+j] = (int) y;
+          x = reduce(x * wm);
+          y = reduce(y * wInvM);
+        }
+      }
+
+      tables = t = new int[][] { roots, invRoots };
+      return t;
+    }
+  }
+
+  private long toMontgomery(long a) {
+    return (a << 32) % p;
+  }
+
+  //The least primitive root: g^((p-1)/q) != 1 for every prime q dividing p - 1
+  private static int primitiveRoot(int p) {
+    List<Integer> factors = NumberTheory.getFactors(p - 1);
+    search:
+    for (int g = 2; ; g++) {
+      for (int q : factors)
+        if (NumberTheory.modPow(g, (p - 1) / q, p) == 1) continue search;
+      return g;
+    }
+  }
+}
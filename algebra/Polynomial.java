@@ -0,0 +1,396 @@
+package math.algebra;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+
+import math.ChineseRemainder;
+
+/**
+  * An immutable polynomial with coefficients in an {@link IntField}, that is, the integers modulo a prime
+  * \(p \lt 2^{31}\).
+  * <p>
+  * Large products use the {@link NumberTheoreticTransform}.  If p is NTT-friendly (\(2^k\) divides \(p - 1\) for a
+  * large enough k, as for 998244353) that's one transform modulo p.  Otherwise the product is taken exactly modulo
+  * three NTT-friendly primes, whose product (about \(2^{86}\)) exceeds every coefficient of the exact integer
+  * product, and reconstructed with the Chinese Remainder Theorem.  Multiplying two polynomials of degree \(10^6\)
+  * costs three transforms of length \(2^{21}\), or nine spread over the common pool.
+  * <p>
+  * Power series inversion uses Newton's iteration, \(g \leftarrow g(2 - fg)\), which doubles the number of correct
+  * terms each step, so it costs a constant number of products.  Division reverses the coefficients and multiplies by
+  * such an inverse, and modular composition uses Brent and Kung's baby-step giant-step method on top of that
+  * division.
+  */
+public final class Polynomial {
+  private static final int NAIVE_LIMIT = 32; //Products with an operand this short are done directly
+
+  //NTT-friendly primes for products modulo anything else: 119 * 2^23 + 1, 5 * 2^25 + 1 and 7 * 2^26 + 1
+  private static final int M1 = 998244353, M2 = 167772161, M3 = 469762049;
+  private static final int MAX_CRT_LENGTH = 1 << 23;
+  private static final ChineseRemainder CRT = new ChineseRemainder(M1, M2, M3);
+
+  private final IntField field;
+  private final int p;
+  private final int[] c; //Coefficients, lowest degree first, with no trailing zeros
+
+  /**
+    * @param field the field of the coefficients
+    * @param coefficients the coefficients, lowest degree first; normalized into the field
+    */
+  public Polynomial(IntField field, int... coefficients) {
+    this(normalize(field, coefficients), field);
+  }
+
+  //Takes ownership of c, trimming trailing zeros; the parameter order keeps it apart from the varargs constructor
+  private Polynomial(int[] c, IntField field) {
+    int n = c.length;
+    while (n > 0 && c[n-1] == 0) n--;
+
+    this.field = field;
+    this.p = field.modulus();
+    this.c = (n == c.length) ? c : Arrays.copyOf(c, n);
+  }
+
+  /**
+    * @return the field of the coefficients
+    */
+  public IntField field() {
+    return field;
+  }
+
+  /**
+    * @return the degree, or -1 for the zero polynomial
+    */
+  public int degree() {
+    return c.length - 1;
+  }
+
+  /**
+    * @return the coefficient of \(x^i\)
+    */
+  public int coefficient(int i) {
+    return (i < c.length) ? c[i] : 0;
+  }
+
+  /**
+    * @return a copy of the coefficients, lowest degree first
+    */
+  public int[] toArray() {
+    return c.clone();
+  }
+
+  /**
+    * @return the value at x, by Horner's rule
+    */
+  public int evaluate(int x) {
+    x = field.normalize(x);
+    long retVal = 0;
+    for (int i = c.length - 1; i >= 0; i--) retVal = (retVal * x + c[i]) % p;
+    return (int) retVal;
+  }
+
+  /**
+    * @param other a polynomial over the same field
+    * @return the sum of this and other
+    */
+  public Polynomial add(Polynomial other) {
+    checkField(other);
+    int[] a = Arrays.copyOf(c, Math.max(c.length, other.c.length));
+    for (int i = 0; i < other.c.length; i++) a[i] = field.add(a[i], other.c[i]);
+    return new Polynomial(a, field);
+  }
+
+  /**
+    * @param other a polynomial over the same field
+    * @return this minus other
+    */
+  public Polynomial subtract(Polynomial other) {
+    checkField(other);
+    int[] a = Arrays.copyOf(c, Math.max(c.length, other.c.length));
+    for (int i = 0; i < other.c.length; i++) a[i] = field.subtract(a[i], other.c[i]);
+    return new Polynomial(a, field);
+  }
+
+  /**
+    * @param other a polynomial over the same field
+    * @return the product of this and other
+    */
+  public Polynomial multiply(Polynomial other) {
+    checkField(other);
+    return new Polynomial(multiply(c, other.c, p), field);
+  }
+
+  /**
+    * @return the product of this and a constant in the field
+    */
+  public Polynomial multiply(int k) {
+    int[] a = new int[c.length];
+    for (int i = 0; i < c.length; i++) a[i] = field.multiply(c[i], k);
+    return new Polynomial(a, field);
+  }
+
+  /**
+    * Computes the power series inverse by Newton's iteration.
+    * @param n the number of terms; positive
+    * @return g with \(fg \equiv 1 \pmod{x^n}\)
+    * @throws ArithmeticException if the constant term is zero
+    */
+  public Polynomial inverse(int n) {
+    if (n < 1)
+      throw new IllegalArgumentException("Number of terms must be positive: " + n);
+    if (c.length == 0 || c[0] == 0)
+      throw new ArithmeticException("Power series with no constant term isn't invertible");
+
+    int[] g = { field.multiplicativeInverseOf(c[0]) };
+    for (int k = 1; k < n; ) {
+      k = Math.min(2 * k, n);
+
+      //t = 2 - fg (mod x^k), then g = gt
+      int[] t = truncate(multiply(Arrays.copyOf(c, Math.min(c.length, k)), g, p), k);
+      for (int i = 0; i < t.length; i++) t[i] = field.additiveInverseOf(t[i]);
+      t = Arrays.copyOf(t, Math.max(t.length, 1));
+      t[0] = field.add(t[0], 2 % p);
+
+      g = Arrays.copyOf(truncate(multiply(g, t, p), k), k);
+    }
+
+    return new Polynomial(g, field);
+  }
+
+  /**
+    * @param d the divisor; nonzero
+    * @return the quotient and remainder, \(\{q, r\}\) with \(f = qd + r\) and \(\deg r \lt \deg d\)
+    */
+  public Polynomial[] divideAndRemainder(Polynomial d) {
+    checkField(d);
+    if (d.c.length == 0)
+      throw new ArithmeticException("Division by the zero polynomial");
+
+    if (c.length < d.c.length) return new Polynomial[] { new Polynomial(new int[0], field), this };
+
+    Polynomial q = new Polynomial(quotient(c, d.c, null), field);
+    return new Polynomial[] { q, subtract(q.multiply(d)) };
+  }
+
+  /**
+    * @param d the divisor; nonzero
+    * @return the quotient of this by d
+    */
+  public Polynomial divide(Polynomial d) {
+    return divideAndRemainder(d)[0];
+  }
+
+  /**
+    * @param d the divisor; nonzero
+    * @return the remainder of this by d
+    */
+  public Polynomial remainder(Polynomial d) {
+    return divideAndRemainder(d)[1];
+  }
+
+  /**
+    * Modular composition, by Brent and Kung's method: with \(k \approx \sqrt{\deg f}\), the powers
+    * \(g^0, \ldots, g^{k-1}\) are computed once, each block of k coefficients of f becomes a combination of them, and
+    * the blocks are put together by Horner's rule in \(g^k\).  That's about \(2\sqrt{\deg f}\) products and
+    * divisions by the modulus, rather than \(\deg f\).
+    * @param g the inner polynomial
+    * @param modulus the modulus; nonzero
+    * @return \(f(g(x)) \bmod modulus\)
+    */
+  public Polynomial compose(Polynomial g, Polynomial modulus) {
+    checkField(g);
+    checkField(modulus);
+    if (modulus.c.length == 0)
+      throw new ArithmeticException("Division by the zero polynomial");
+
+    int n = modulus.c.length - 1; //Degree of the modulus; everything reduced has fewer coefficients
+    if (n == 0 || c.length == 0) return new Polynomial(new int[0], field);
+
+    //Reverse of the modulus, inverted once for every reduction
+    int[] revInv = (n > 1) ? Arrays.copyOf(reverse(modulus.c).inverse(n - 1).c, n - 1) : null;
+
+    int k = (int) Math.ceil(Math.sqrt(c.length));
+    int[][] powers = new int[k + 1][];
+    powers[0] = new int[] { 1 };
+    powers[1] = g.remainder(modulus).c;
+    for (int i = 2; i <= k; i++) powers[i] = reduce(multiply(powers[i-1], powers[1], p), modulus.c, revInv);
+
+    int[] retVal = null;
+    for (int block = (c.length - 1) / k; block >= 0; block--) {
+      //The combination sum_i f_(block k + i) g^i
+      long[] acc = new long[n];
+      for (int i = 0; i < k && block * k + i < c.length; i++) {
+        long f = c[block * k + i];
+        if (f == 0) continue;
+        for (int j = 0; j < powers[i].length; j++) acc[j] = (acc[j] + f * powers[i][j]) % p;
+      }
+
+      //Horner's rule in g^k
+      int[] prev = (retVal == null) ? new int[0] : reduce(multiply(retVal, powers[k], p), modulus.c, revInv);
+      retVal = new int[n];
+      for (int j = 0; j < n; j++) retVal[j] = field.add((j < prev.length) ? prev[j] : 0, (int) acc[j]);
+    }
+
+    return new Polynomial(retVal, field);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Polynomial)) return false;
+
+    Polynomial other = (Polynomial) o;
+    return p == other.p && Arrays.equals(c, other.c);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * p + Arrays.hashCode(c);
+  }
+
+  @Override
+  public String toString() {
+    if (c.length == 0) return "0";
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = c.length - 1; i >= 0; i--) {
+      if (c[i] == 0) continue;
+      if (sb.length() > 0) sb.append(" + ");
+      sb.append(c[i]);
+      if (i > 0) sb.append("x");
+      if (i > 1) sb.append("^").append(i);
+    }
+
+    return sb.toString();
+  }
+
+  private void checkField(Polynomial other) {
+    if (other.p != p)
+      throw new IllegalArgumentException("Polynomials are over different fields: " + p + ", " + other.p);
+  }
+
+  private Polynomial reverse(int[] a) {
+    int[] r = new int[a.length];
+    for (int i = 0; i < a.length; i++) r[i] = a[a.length - 1 - i];
+    return new Polynomial(r, field);
+  }
+
+  //The quotient of a by d (deg a >= deg d), by reversing: rev(q) = rev(a) / rev(d) mod x^(m+1), m = deg a - deg d.
+  //revInv, if given, is the inverse of rev(d) to at least m+1 terms.
+  private int[] quotient(int[] a, int[] d, int[] revInv) {
+    int m = a.length - d.length;
+
+    if (m < NAIVE_LIMIT || d.length <= NAIVE_LIMIT) {
+      //Schoolbook long division
+      long[] r = new long[a.length];
+      for (int i = 0; i < a.length; i++) r[i] = a[i];
+
+      int[] q = new int[m + 1];
+      long lead = field.multiplicativeInverseOf(d[d.length - 1]);
+      for (int i = m; i >= 0; i--) {
+        q[i] = (int) (r[i + d.length - 1] % p * lead % p);
+        long neg = p - q[i];
+        for (int j = 0; j < d.length; j++) r[i + j] = (r[i + j] + neg * d[j]) % p;
+      }
+
+      return q;
+    }
+
+    if (revInv == null || revInv.length < m + 1) revInv = reverse(d).inverse(m + 1).c;
+
+    int[] revA = new int[m + 1];
+    for (int i = 0; i <= m; i++) revA[i] = a[a.length - 1 - i];
+
+    int[] revQ = Arrays.copyOf(truncate(multiply(revA, Arrays.copyOf(revInv, Math.min(revInv.length, m + 1)), p), m + 1), m + 1);
+    int[] q = new int[m + 1];
+    for (int i = 0; i <= m; i++) q[i] = revQ[m - i];
+    return q;
+  }
+
+  //a mod d, for deg a < 2 deg d; revInv, if not null, is the inverse of rev(d) to deg d - 1 terms
+  private int[] reduce(int[] a, int[] d, int[] revInv) {
+    int n = a.length;
+    while (n > 0 && a[n-1] == 0) n--;
+    if (n < d.length) return Arrays.copyOf(a, n);
+
+    a = Arrays.copyOf(a, n);
+    int[] q = quotient(a, d, revInv);
+    int[] qd = multiply(q, d, p);
+    int[] r = new int[d.length - 1];
+    for (int i = 0; i < r.length; i++) r[i] = field.subtract(a[i], (i < qd.length) ? qd[i] : 0);
+    return r;
+  }
+
+  private static int[] truncate(int[] a, int n) {
+    return (a.length <= n) ? a : Arrays.copyOf(a, n);
+  }
+
+  private static int[] normalize(IntField field, int[] coefficients) {
+    int[] retVal = new int[coefficients.length];
+    for (int i = 0; i < retVal.length; i++) retVal[i] = field.normalize(coefficients[i]);
+    return retVal;
+  }
+
+  /**
+    * The product of two coefficient arrays modulo p, by the cheapest applicable method.
+    */
+  static int[] multiply(int[] a, int[] b, int p) {
+    if (a.length == 0 || b.length == 0) return new int[0];
+
+    int len = a.length + b.length - 1;
+    if (Math.min(a.length, b.length) <= NAIVE_LIMIT) return naive(a, b, p);
+
+    int size = Integer.highestOneBit(len - 1) << 1;
+    if (NumberTheoreticTransform.supports(p, size)) return ntt(a, b, size, len, NumberTheoreticTransform.forPrime(p));
+
+    if (size > MAX_CRT_LENGTH) {
+      //Split the longer operand and add the pieces, shifted
+      if (a.length < b.length) { int[] t = a; a = b; b = t; }
+      int half = a.length >>> 1;
+      int[] lo = multiply(Arrays.copyOf(a, half), b, p), hi = multiply(Arrays.copyOfRange(a, half, a.length), b, p);
+
+      int[] retVal = Arrays.copyOf(lo, len);
+      for (int i = 0; i < hi.length; i++) {
+        int s = retVal[half + i] - (p - hi[i]);
+        retVal[half + i] = s + ((s >> 31) & p);
+      }
+      return retVal;
+    }
+
+    //Exact product modulo three primes, on the common pool, then Garner's algorithm
+    int[] x = a, y = b;
+    ForkJoinTask<int[]> t2 = ForkJoinTask.adapt(() -> ntt(x, y, size, len, NumberTheoreticTransform.forPrime(M2))).fork();
+    ForkJoinTask<int[]> t3 = ForkJoinTask.adapt(() -> ntt(x, y, size, len, NumberTheoreticTransform.forPrime(M3))).fork();
+    int[] r1 = ntt(x, y, size, len, NumberTheoreticTransform.forPrime(M1));
+    int[] r2 = t2.join(), r3 = t3.join();
+
+    int[] retVal = new int[len];
+    CRT.reconstruct(new int[][] { r1, r2, r3 }, p, retVal);
+    return retVal;
+  }
+
+  //The product modulo the transform's prime; inputs are reduced mod that prime first
+  private static int[] ntt(int[] a, int[] b, int size, int len, NumberTheoreticTransform t) {
+    int q = t.modulus();
+    int[] fa = new int[size], fb = new int[size];
+    for (int i = 0; i < a.length; i++) fa[i] = (a[i] >= q) ? a[i] % q : a[i];
+    for (int i = 0; i < b.length; i++) fb[i] = (b[i] >= q) ? b[i] % q : b[i];
+
+    t.convolve(fa, fb);
+    return Arrays.copyOf(fa, len);
+  }
+
+  private static int[] naive(int[] a, int[] b, int p) {
+    if (a.length > b.length) { int[] t = a; a = b; b = t; }
+
+    //Each output is a sum of at most a.length products below p^2 < 2^62; reduce after every product
+    long[] acc = new long[a.length + b.length - 1];
+    for (int i = 0; i < a.length; i++) {
+      long ai = a[i];
+      if (ai == 0) continue;
+      for (int j = 0; j < b.length; j++) acc[i + j] = (acc[i + j] + ai * b[j]) % p;
+    }
+
+    int[] retVal = new int[acc.length];
+    for (int i = 0; i < acc.length; i++) retVal[i] = (int) acc[i];
+    return retVal;
+  }
+}
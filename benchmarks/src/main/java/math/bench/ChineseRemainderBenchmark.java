@@ -0,0 +1,69 @@
+package math.bench;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import math.ChineseRemainder;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Reconstructing arrays of values from their residues modulo three NTT primes, and products in a residue number
+  * system against {@link BigInteger#multiply(BigInteger)}.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChineseRemainderBenchmark {
+  private static final long[] NTT_PRIMES = { 998244353, 167772161, 469762049 };
+
+  @Param({"1000", "1000000"})
+  public int n;
+
+  private ChineseRemainder crt, rns;
+  private long[][] residues;
+  private long[] out;
+  private BigInteger x, y;
+
+  @Setup
+  public void setup() {
+    Random r = new Random(42);
+    crt = new ChineseRemainder(NTT_PRIMES);
+    residues = new long[NTT_PRIMES.length][n];
+    for (int i = 0; i < NTT_PRIMES.length; i++) {
+      for (int j = 0; j < n; j++) residues[i][j] = Math.floorMod(r.nextLong(), NTT_PRIMES[i]);
+    }
+    out = new long[n];
+
+    //Operands of about n / 100 bits, so the largest system has a few hundred moduli
+    int bits = Math.max(64, n / 100);
+    rns = ChineseRemainder.withPrimes(2 * bits + 1);
+    x = new BigInteger(bits, r);
+    y = new BigInteger(bits, r);
+  }
+
+  @Benchmark
+  public long[] reconstructModPrime() {
+    crt.reconstruct(residues, 1_000_000_007L, out);
+    return out;
+  }
+
+  @Benchmark
+  public BigInteger[] reconstructBigInteger() {
+    return crt.toBigInteger(residues);
+  }
+
+  @Benchmark
+  public BigInteger residueMultiply() {
+    return rns.multiply(x, y);
+  }
+
+  @Benchmark
+  public BigInteger bigIntegerMultiply() {
+    return x.multiply(y);
+  }
+}
@@ -0,0 +1,49 @@
+package math.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import math.Combinatorics;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Binomial coefficients modulo a prime, for primes small enough to need Lucas' theorem and for large ones.
+  */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinatoricsBenchmark {
+  private static final int INPUTS = 1024;
+
+  @Param({"1009", "1000003", "1000000007"})
+  public int p;
+
+  @Param({"1000", "1000000", "1000000000"})
+  public long n;
+
+  private long[] r;
+  private int i;
+
+  @Setup
+  public void setup() {
+    SplittableRandom rng = new SplittableRandom(p ^ n);
+    r = new long[INPUTS];
+    for (int k = 0; k < INPUTS; k++) r[k] = rng.nextLong(n + 1);
+  }
+
+  @Benchmark
+  public long binomMod() {
+    i = (i + 1) & (INPUTS - 1);
+    return Combinatorics.binomMod(n, r[i], p);
+  }
+
+  @Benchmark
+  public long binom() {
+    i = (i + 1) & (INPUTS - 1);
+    return Combinatorics.binom(60, r[i] % 61);
+  }
+}
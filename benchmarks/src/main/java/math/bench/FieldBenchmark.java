@@ -0,0 +1,93 @@
+package math.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import math.algebra.Field;
+import math.algebra.IntField;
+import math.algebra.LongField;
+import math.algebra.ModularAddition;
+import math.algebra.ModularMultiplication;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Scalar operations in the integers modulo a prime, through the generic {@link Field} and its primitive
+  * specializations.
+  */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldBenchmark {
+  private static final int INPUTS = 1024;
+
+  @Param({"13", "40009"})
+  public int p;
+
+  private Field<Integer> field;
+  private IntField intField;
+  private LongField longField;
+  private Integer[] a, b;
+  private int[] ai, bi;
+  private int i;
+
+  @Setup
+  public void setup() {
+    field = new Field<Integer>(new ModularAddition(p), new ModularMultiplication(p));
+    intField = new IntField(p);
+    longField = new LongField(p);
+
+    SplittableRandom rng = new SplittableRandom(p);
+    a = new Integer[INPUTS];
+    b = new Integer[INPUTS];
+    ai = new int[INPUTS];
+    bi = new int[INPUTS];
+    for (int k = 0; k < INPUTS; k++) {
+      a[k] = ai[k] = 1 + rng.nextInt(p - 1);
+      b[k] = bi[k] = 1 + rng.nextInt(p - 1);
+    }
+  }
+
+  private int next() {
+    return i = (i + 1) & (INPUTS - 1);
+  }
+
+  @Benchmark
+  public Integer add() {
+    int k = next();
+    return field.add(a[k], b[k]);
+  }
+
+  @Benchmark
+  public Integer multiply() {
+    int k = next();
+    return field.multiply(a[k], b[k]);
+  }
+
+  @Benchmark
+  public Integer divide() {
+    int k = next();
+    return field.divide(a[k], b[k]);
+  }
+
+  @Benchmark
+  public int intFieldMultiply() {
+    int k = next();
+    return intField.multiply(ai[k], bi[k]);
+  }
+
+  @Benchmark
+  public long longFieldMultiply() {
+    int k = next();
+    return longField.multiply(ai[k], bi[k]);
+  }
+
+  @Benchmark
+  public int intFieldDivide() {
+    int k = next();
+    return intField.divide(ai[k], bi[k]);
+  }
+}
@@ -0,0 +1,94 @@
+package math.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import math.algebra.IntField;
+import math.algebra.LongField;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Bulk array operations on the primitive prime fields: one call per array, reported per call.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldVectorBenchmark {
+  private static final int INT_PRIME = 998244353;
+
+  @Param({"4096"})
+  public int length;
+
+  @Param({"1000000007", "4611686018427387847"})
+  public long p;
+
+  private IntField intField;
+  private LongField longField;
+  private int[] ai, bi, outi;
+  private long[] a, b, out;
+
+  @Setup
+  public void setup() {
+    intField = new IntField(INT_PRIME);
+    longField = new LongField(p);
+
+    SplittableRandom rng = new SplittableRandom(length);
+    ai = new int[length];
+    bi = new int[length];
+    outi = new int[length];
+    a = new long[length];
+    b = new long[length];
+    out = new long[length];
+    for (int k = 0; k < length; k++) {
+      ai[k] = 1 + rng.nextInt(INT_PRIME - 1);
+      bi[k] = 1 + rng.nextInt(INT_PRIME - 1);
+      a[k] = rng.nextLong(1, p);
+      b[k] = rng.nextLong(1, p);
+    }
+  }
+
+  @Benchmark
+  public int intDot() {
+    return intField.dot(ai, bi);
+  }
+
+  @Benchmark
+  public int[] intMultiply() {
+    intField.multiply(ai, bi, outi);
+    return outi;
+  }
+
+  @Benchmark
+  public int[] intBatchInverse() {
+    intField.batchInverse(ai, outi);
+    return outi;
+  }
+
+  @Benchmark
+  public long longDot() {
+    return longField.dot(a, b);
+  }
+
+  @Benchmark
+  public long[] longAdd() {
+    longField.add(a, b, out);
+    return out;
+  }
+
+  @Benchmark
+  public long[] longAxpy() {
+    System.arraycopy(b, 0, out, 0, length);
+    longField.axpy(a[0], a, out);
+    return out;
+  }
+
+  @Benchmark
+  public long[] longBatchInverse() {
+    longField.batchInverse(a, out);
+    return out;
+  }
+}
@@ -0,0 +1,33 @@
+package math.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import math.PrimeSieve;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Counting primes up to 10^8 and 10^9, sequentially and in parallel.
+  * <p>
+  * These take long enough per operation that single-shot timing is used.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LargeSieveBenchmark {
+  @Param({"100000000", "1000000000"})
+  public long limit;
+
+  @Benchmark
+  public long count() {
+    return PrimeSieve.count(0, limit);
+  }
+
+  @Benchmark
+  public long parallelCount() {
+    return PrimeSieve.parallelCount(0, limit);
+  }
+}
@@ -0,0 +1,54 @@
+package math.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import math.ModularMatrix;
+import math.algebra.LongField;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Dense matrix products and row reduction modulo a prime; the product runs on the common pool.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatrixBenchmark {
+  @Param({"100", "500"})
+  public int size;
+
+  @Param({"1000000007", "4611686018427387847"})
+  public long p;
+
+  private ModularMatrix m;
+
+  @Setup
+  public void setup() {
+    LongField field = new LongField(p);
+    SplittableRandom rng = new SplittableRandom(size);
+
+    long[][] entries = new long[size][size];
+    for (long[] row : entries)
+      for (int j = 0; j < size; j++) row[j] = rng.nextLong(p);
+    m = new ModularMatrix(field, entries);
+  }
+
+  @Benchmark
+  public ModularMatrix multiply() {
+    return m.multiply(m);
+  }
+
+  @Benchmark
+  public ModularMatrix inverse() {
+    return m.inverse();
+  }
+
+  @Benchmark
+  public long determinant() {
+    return m.determinant();
+  }
+}
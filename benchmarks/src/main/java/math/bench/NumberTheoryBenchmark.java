@@ -0,0 +1,74 @@
+package math.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import math.NumberTheory;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Per-call cost of the scalar number theory routines, over inputs of a given bit length.
+  * <p>
+  * Each thread walks its own array of random inputs, so the results are meaningful under <code>-t</code>.
+  */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberTheoryBenchmark {
+  private static final int INPUTS = 1024;
+
+  @Param({"10", "20", "31", "62"})
+  public int bits;
+
+  private long[] a, b;
+  private final long[] factors = new long[64];
+  private int i;
+
+  @Setup
+  public void setup() {
+    SplittableRandom rng = new SplittableRandom(bits);
+    a = new long[INPUTS];
+    b = new long[INPUTS];
+
+    for (int k = 0; k < INPUTS; k++) {
+      a[k] = (rng.nextLong() >>> (64 - bits)) | 1;
+      b[k] = (rng.nextLong() >>> (64 - bits)) | 1;
+    }
+  }
+
+  private int next() {
+    return i = (i + 1) & (INPUTS - 1);
+  }
+
+  @Benchmark
+  public boolean isPrime() {
+    return NumberTheory.isPrime(a[next()]);
+  }
+
+  @Benchmark
+  public long modPow() {
+    int k = next();
+    return NumberTheory.modPow(b[k], a[k], a[k]);
+  }
+
+  @Benchmark
+  public long mulMod() {
+    int k = next();
+    return NumberTheory.mulMod(a[k], b[k], a[(k + 1) & (INPUTS - 1)]);
+  }
+
+  @Benchmark
+  public long gcd() {
+    int k = next();
+    return NumberTheory.gcd(a[k], b[k]);
+  }
+
+  @Benchmark
+  public int getFactors() {
+    return NumberTheory.getFactors(a[next()], factors);
+  }
+}
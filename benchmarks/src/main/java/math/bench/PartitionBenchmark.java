@@ -0,0 +1,33 @@
+package math.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import math.NumberTheory;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Tabulating partition numbers modulo a prime, by the pentagonal recurrence and by a power-series inverse.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PartitionBenchmark {
+  private static final int P = 998244353;
+
+  @Param({"10000", "100000", "1000000"})
+  public int n;
+
+  @Benchmark
+  public long[] pentagonal() {
+    return NumberTheory.partitions(n, P);
+  }
+
+  @Benchmark
+  public int[] seriesInverse() {
+    return NumberTheory.partitionsModPrime(n, P);
+  }
+}
@@ -0,0 +1,53 @@
+package math.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import math.algebra.IntField;
+import math.algebra.Polynomial;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Polynomial products and power series inverses, for an NTT-friendly prime (one transform per operand) and for
+  * 10^9 + 7 (three primes and CRT).
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolynomialBenchmark {
+  @Param({"10000", "1000000"})
+  public int degree;
+
+  @Param({"998244353", "1000000007"})
+  public int p;
+
+  private Polynomial a, b;
+
+  @Setup
+  public void setup() {
+    IntField field = new IntField(p);
+    SplittableRandom rng = new SplittableRandom(degree);
+
+    int[] ca = new int[degree + 1], cb = new int[degree + 1];
+    for (int i = 0; i <= degree; i++) {
+      ca[i] = 1 + rng.nextInt(p - 1);
+      cb[i] = 1 + rng.nextInt(p - 1);
+    }
+    a = new Polynomial(field, ca);
+    b = new Polynomial(field, cb);
+  }
+
+  @Benchmark
+  public Polynomial multiply() {
+    return a.multiply(b);
+  }
+
+  @Benchmark
+  public Polynomial inverse() {
+    return a.inverse(degree + 1);
+  }
+}
@@ -0,0 +1,28 @@
+package math.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import math.NumberTheory;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Counting primes up to 10^10 through 10^13 with {@link NumberTheory#primeCount(long)}.
+  * <p>
+  * Each call builds its own tables, so single-shot timing measures the whole computation.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrimeCountBenchmark {
+  @Param({"10000000000", "1000000000000", "10000000000000"})
+  public long x;
+
+  @Benchmark
+  public long primeCount() {
+    return NumberTheory.primeCount(x);
+  }
+}
@@ -0,0 +1,37 @@
+package math.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import math.NumberTheory;
+import math.PrimeSieve;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Sieving cost for limits from 10^3 to 10^7.  See {@link LargeSieveBenchmark} for the larger limits.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimeSieveBenchmark {
+  @Param({"1000", "1000000", "10000000"})
+  public int limit;
+
+  @Benchmark
+  public int[] primes() {
+    return PrimeSieve.primes(limit);
+  }
+
+  @Benchmark
+  public long count() {
+    return PrimeSieve.count(0, limit);
+  }
+
+  @Benchmark
+  public int getPrimes() {
+    return NumberTheory.getPrimes(limit).size();
+  }
+}
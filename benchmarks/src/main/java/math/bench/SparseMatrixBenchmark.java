@@ -0,0 +1,58 @@
+package math.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import math.SparseMatrix;
+import math.algebra.LongField;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Sparse matrix-vector products modulo a prime, with ten nonzeros per row, on the common pool.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SparseMatrixBenchmark {
+  private static final int PER_ROW = 10;
+
+  @Param({"10000", "1000000"})
+  public int size;
+
+  @Param({"1000000007", "4611686018427387847"})
+  public long p;
+
+  private SparseMatrix m;
+  private long[] x, y;
+
+  @Setup
+  public void setup() {
+    LongField field = new LongField(p);
+    SplittableRandom rng = new SplittableRandom(size);
+
+    int nnz = size * PER_ROW;
+    int[] row = new int[nnz], col = new int[nnz];
+    long[] val = new long[nnz];
+    for (int k = 0; k < nnz; k++) {
+      row[k] = k / PER_ROW;
+      col[k] = rng.nextInt(size);
+      val[k] = rng.nextLong(p);
+    }
+    m = new SparseMatrix(field, size, size, row, col, val);
+
+    x = new long[size];
+    y = new long[size];
+    for (int i = 0; i < size; i++) x[i] = rng.nextLong(p);
+  }
+
+  @Benchmark
+  public long[] multiply() {
+    m.multiply(x, y, ForkJoinPool.commonPool());
+    return y;
+  }
+}
@@ -0,0 +1,38 @@
+package math.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import math.SummatoryFunctions;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+  * Sublinear sums of arithmetic functions up to 10^8 and 10^10.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SummatoryFunctionsBenchmark {
+  private static final long P = 1000000007L;
+
+  @Param({"100000000", "10000000000"})
+  public long x;
+
+  @Benchmark
+  public long totientSum() {
+    return SummatoryFunctions.totientSum(x, P);
+  }
+
+  @Benchmark
+  public long mertens() {
+    return SummatoryFunctions.mertens(x);
+  }
+
+  @Benchmark
+  public long divisorSigmaSum() {
+    return SummatoryFunctions.divisorSigmaSum(x, P);
+  }
+}
@@ -1,9 +1,11 @@
 package math.geometry;
 
+import java.util.*;
+
 public class ConvexPolygon {
   private ArrayList<Point2D> vertices;
   
   public ConvexPolygon() {
-    verices = new ArrayList<Point2D>();
+    vertices = new ArrayList<Point2D>();
   }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BinomModTest {
+  private static long exact(long n, long r, long p) {
+    BigInteger b = BigInteger.ONE;
+    for (long i = 0; i < r; i++) b = b.multiply(BigInteger.valueOf(n - i)).divide(BigInteger.valueOf(i + 1));
+    return b.mod(BigInteger.valueOf(p)).longValue();
+  }
+
+  @Test
+  void matchesExactValues() {
+    int[] primes = { 2, 3, 5, 7, 13, 101, 997, 65537, 1_000_003, BinomialTable.MAX_MODULUS - 15,
+                     1_000_000_007, Integer.MAX_VALUE };
+    Random rnd = new Random(1);
+    for (int p : primes) {
+      assertTrue(NumberTheory.isPrime(p));
+      for (int i = 0; i < 50; i++) {
+        long n = rnd.nextInt(300), r = rnd.nextInt(310) - 5;
+        long expected = (r < 0 || r > n) ? 0 : exact(n, r, p);
+        assertEquals(expected, Combinatorics.binomMod(n, r, p), "C(" + n + ", " + r + ") mod " + p);
+      }
+    }
+  }
+
+  @Test
+  void usesLucasPastThePrime() {
+    //n past p, so the digits of n and r in base p come into play
+    assertEquals(exact(1000, 500, 7), Combinatorics.binomMod(1000, 500, 7));
+    assertEquals(exact(1000, 337, 997), Combinatorics.binomMod(1000, 337, 997));
+    assertEquals(exact(3000, 1500, 1009), Combinatorics.binomMod(3000, 1500, 1009));
+    assertEquals(0, Combinatorics.binomMod(1L << 40, 3, 2));
+  }
+
+  @Test
+  void buildsTablesOnlyWhenTheyPayOff() {
+    int p = BinomialTable.MAX_MODULUS - 1;
+    while (!NumberTheory.isPrime(p)) p--;
+
+    long before = BinomialTable.sharedBytes();
+    assertEquals(120, Combinatorics.binomMod(10, 3, p));
+    assertEquals(exact(1000, 3, p), Combinatorics.binomMod(1000, 3, p));
+    assertEquals(before, BinomialTable.sharedBytes());
+  }
+
+  @Test
+  void boundsTheSharedTables() {
+    int p = BinomialTable.MAX_MODULUS;
+    for (int i = 0; i < 4; i++) {
+      do p--; while (!NumberTheory.isPrime(p));
+      //Large enough r to use the shared table; by Lucas, C(2p + 3, p + 1) = C(2, 1) C(3, 1)
+      assertEquals(6, Combinatorics.binomMod(2L * p + 3, p + 1, p));
+      assertEquals(0, Combinatorics.binomMod(p + 5, p / 2 + 4, p));
+      assertTrue(BinomialTable.sharedBytes() <= BinomialTable.SHARED_MAX_BYTES);
+    }
+  }
+
+  @Test
+  void matchesPrimePowerTables() {
+    Random rnd = new Random(2);
+    for (int[] pe : new int[][] { {2, 10}, {3, 5}, {5, 4}, {7, 3}, {1009, 2} }) {
+      BinomialTable t = new BinomialTable(pe[0], pe[1]);
+      for (int i = 0; i < 100; i++) {
+        long n = rnd.nextInt(400), r = rnd.nextInt(400);
+        long expected = (r > n) ? 0 : exact(n, r, t.modulus());
+        assertEquals(expected, t.binom(n, r), "C(" + n + ", " + r + ") mod " + t.modulus());
+      }
+    }
+  }
+}
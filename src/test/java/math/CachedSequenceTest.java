@@ -0,0 +1,64 @@
+package math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class CachedSequenceTest {
+  private static final class Squares extends Sequence<Long> {
+    @Override
+    public Long get(long n) {
+      return n * n + 7;
+    }
+
+    @Override
+    public boolean isIndependent() {
+      return true;
+    }
+  }
+
+  @Test
+  void servesCorrectTermsUnderEviction() {
+    for (int capacity : new int[] { 0, 1, 16, 1000 }) {
+      CachedSequence c = new CachedSequence(new Squares(), 64, capacity);
+      IntStream.range(0, 4).parallel().forEach(seed -> {
+        Random r = new Random(seed);
+        for (int i = 0; i < 200_000; i++) {
+          long n = (r.nextInt(4) == 0) ? r.nextInt(50_000) : r.nextInt(capacity + 200);
+          assertEquals(n * n + 7, c.getLong(n));
+        }
+      });
+
+      assertEquals(800_000, c.hits() + c.misses());
+      assertTrue(c.evictions() <= c.misses());
+    }
+  }
+
+  @Test
+  void missesOncePerTermWhenEverythingFits() {
+    CachedSequence c = new CachedSequence(new Squares(), 0, 1 << 12);
+    for (int pass = 0; pass < 3; pass++) {
+      for (long n = 0; n < 3000; n++) assertEquals(n * n + 7, c.getLong(n));
+    }
+    assertEquals(3000, c.misses());
+    assertEquals(6000, c.hits());
+    assertEquals(0, c.evictions());
+  }
+
+  @Test
+  void keepsThePrefixWithinAFiniteSequence() {
+    FibonacciSequence fib = new FibonacciSequence();
+    CachedSequence c = new CachedSequence(fib, 1000, 0);
+    assertEquals(fib.getLong(50), c.getLong(50));
+    assertEquals(fib.getLong(80), c.getLong(80));
+    assertEquals(fib.getLong(92), c.getLong(92));
+    assertThrows(IllegalArgumentException.class, () -> c.getLong(93));
+
+    long[] out = new long[93];
+    c.fill(0, out);
+    for (int n = 0; n < out.length; n++) assertEquals(fib.getLong(n), out[n]);
+  }
+}
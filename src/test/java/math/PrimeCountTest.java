@@ -0,0 +1,33 @@
+package math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PrimeCountTest {
+  @Test
+  void matchesKnownValues() {
+    long[] pi = { 0, 4, 25, 168, 1229, 9592, 78498, 664579, 5761455, 50847534, 455052511L, 4118054813L,
+                  37607912018L }; //pi(10^k)
+    for (int k = 0; k < pi.length; k++) assertEquals(pi[k], NumberTheory.primeCount((long) Math.pow(10, k)));
+  }
+
+  @Test
+  void rejectsArgumentsPastTheLimit() {
+    //x^(2/3) at the limit is about 1.7 * 10^11, so only the bound itself is checked, not a count there
+    assertThrows(IllegalArgumentException.class, () -> NumberTheory.primeCount(NumberTheory.PRIME_COUNT_LIMIT + 1));
+    assertThrows(IllegalArgumentException.class, () -> NumberTheory.primeCount(PrimeSieve.MAX_LIMIT));
+  }
+
+  @Test
+  void matchesSieve() {
+    Random r = new Random(1);
+    for (int i = 0; i < 200; i++) {
+      long x = r.nextInt(20_000_000);
+      assertEquals(PrimeSieve.count(0, x), NumberTheory.primeCount(x), "pi(" + x + ")");
+    }
+    for (long x = 0; x < 1000; x++) assertEquals(PrimeSieve.count(0, x), NumberTheory.primeCount(x));
+  }
+}
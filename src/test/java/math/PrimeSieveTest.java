@@ -0,0 +1,75 @@
+package math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+class PrimeSieveTest {
+  //Trial division, for checking small windows
+  private static boolean isPrimeSlow(long n) {
+    if (n < 2) return false;
+    for (long d = 2; d * d <= n; d++) {
+      if (n % d == 0) return false;
+    }
+    return true;
+  }
+
+  @Test
+  void countsMatchKnownValues() {
+    long[] pi = { 0, 4, 25, 168, 1229, 9592, 78498, 664579, 5761455, 50847534 }; //pi(10^k)
+    for (int k = 0; k < pi.length; k++) {
+      long x = (long) Math.pow(10, k);
+      assertEquals(pi[k], PrimeSieve.count(0, x), "pi(10^" + k + ")");
+      assertEquals(pi[k], PrimeSieve.parallelCount(0, x), "parallel pi(10^" + k + ")");
+    }
+  }
+
+  @Test
+  void primesMatchTrialDivision() {
+    int[] primes = PrimeSieve.primes(100_000);
+    int i = 0;
+    for (int n = 0; n <= 100_000; n++) {
+      if (isPrimeSlow(n)) assertEquals(n, primes[i++]);
+    }
+    assertEquals(primes.length, i);
+  }
+
+  @Test
+  void windowsMatchIsPrime() {
+    for (long lo : new long[] { 0, 1L << 32, 1_000_000_000_000L, 1L << 50 }) {
+      long hi = lo + 5000;
+      long[] expected = LongStream.rangeClosed(lo, hi).filter(NumberTheory::isPrime).toArray();
+      assertArrayEquals(expected, PrimeSieve.primesInRange(lo, hi), "window at " + lo);
+      assertArrayEquals(expected, PrimeSieve.parallelPrimesInRange(lo, hi), "parallel window at " + lo);
+    }
+  }
+
+  @Test
+  void bitsMatchPrimes() {
+    int N = 3_000_000;
+    long[] bits = PrimeSieve.parallelOddPrimeBits(N);
+    assertArrayEquals(PrimeSieve.oddPrimeBits(N), bits);
+
+    int[] fromBits = IntStream.rangeClosed(0, N)
+      .filter(n -> n == 2 || ((n & 1) == 1 && (bits[n >>> 7] >>> ((n >>> 1) & 63) & 1) != 0)).toArray();
+    assertArrayEquals(PrimeSieve.primes(N), fromBits);
+  }
+
+  @Test
+  void sievesUpToMax() {
+    long hi = PrimeSieve.MAX_LIMIT, lo = hi - 2000;
+    long[] expected = LongStream.rangeClosed(lo, hi).filter(NumberTheory::isPrime).toArray();
+    assertArrayEquals(expected, PrimeSieve.primesInRange(lo, hi));
+    assertEquals(expected.length, PrimeSieve.count(lo, hi));
+  }
+
+  @Test
+  void rejectsLimitsPastMax() {
+    assertThrows(IllegalArgumentException.class, () -> PrimeSieve.count(0, PrimeSieve.MAX_LIMIT + 1));
+    assertEquals(0, Arrays.stream(PrimeSieve.primes(1)).count());
+  }
+}
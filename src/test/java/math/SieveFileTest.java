@@ -0,0 +1,58 @@
+package math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SieveFileTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void roundTrips() throws IOException {
+    int N = 1_000_000;
+    Path path = dir.resolve("sieve.bin");
+    SieveFile.write(path, N);
+
+    SieveFile f = SieveFile.open(path);
+    assertEquals(N, f.limit());
+
+    int[] primes = PrimeSieve.primes(N);
+    int[] mapped = new int[f.primes().remaining()];
+    f.primes().get(mapped);
+    assertArrayEquals(primes, mapped);
+
+    long[] bits = new long[f.oddPrimeBits().remaining()];
+    f.oddPrimeBits().get(bits);
+    assertArrayEquals(PrimeSieve.oddPrimeBits(N), bits);
+
+    SmallestPrimeFactorTable spf = f.smallestPrimeFactorTable(), heap = new SmallestPrimeFactorTable(N);
+    for (int n = 2; n <= N; n += 37) assertEquals(heap.smallestPrimeFactor(n), spf.smallestPrimeFactor(n));
+  }
+
+  @Test
+  void detectsCorruption() throws IOException {
+    Path path = dir.resolve("sieve.bin");
+    SieveFile.write(path, 100_000);
+    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      ch.write(ByteBuffer.wrap(new byte[] { 0x55 }), ch.size() - 10);
+    }
+
+    assertThrows(IOException.class, () -> SieveFile.open(path));
+    assertDoesNotThrow(() -> SieveFile.open(path, false));
+  }
+
+  @Test
+  void rejectsLimitsPastMax() {
+    Path path = dir.resolve("sieve.bin");
+    assertThrows(IllegalArgumentException.class, () -> SieveFile.write(path, SieveFile.MAX_LIMIT + 1));
+    assertThrows(IllegalArgumentException.class, () -> SieveFile.write(path, Integer.MAX_VALUE));
+  }
+}
@@ -0,0 +1,38 @@
+package math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class SummatoryFunctionsTest {
+  @Test
+  void matchesDirectSums() {
+    int N = 200_000;
+    SmallestPrimeFactorTable t = new SmallestPrimeFactorTable(N);
+    long m = 1_000_000_007L, phi = 0, mu = 0, d = 0, sigma = 0;
+    for (int n = 1; n <= N; n++) {
+      phi += t.totient(n);
+      mu += t.mobius(n);
+      d += t.divisorCount(n);
+      sigma += t.divisorSigma(1, n);
+      if (n % 9973 == 0 || n == N) {
+        assertEquals(phi % m, SummatoryFunctions.totientSum(n, m), "Phi(" + n + ")");
+        assertEquals(mu, SummatoryFunctions.mertens(n), "M(" + n + ")");
+        assertEquals(d % m, SummatoryFunctions.divisorCountSum(n, m), "D(" + n + ")");
+        assertEquals(sigma % m, SummatoryFunctions.divisorSigmaSum(n, m), "S(" + n + ")");
+      }
+    }
+  }
+
+  @Test
+  void matchesKnownValues() {
+    assertEquals(303963552392L, SummatoryFunctions.totientSum(1_000_000, Long.MAX_VALUE));
+    assertEquals(-33722, SummatoryFunctions.mertens(10_000_000_000L));
+  }
+
+  @Test
+  void rejectsArgumentsPastTheLimit() {
+    assertThrows(IllegalArgumentException.class, () -> SummatoryFunctions.mertens(SummatoryFunctions.MAX_ARGUMENT + 1));
+    assertThrows(IllegalArgumentException.class, () -> SummatoryFunctions.totientSum(Long.MAX_VALUE, 2));
+  }
+}
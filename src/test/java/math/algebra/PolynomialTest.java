@@ -0,0 +1,26 @@
+package math.algebra;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class PolynomialTest {
+  private static final IntField F7 = new IntField(7), F11 = new IntField(11);
+
+  @Test
+  void addsAndSubtractsCoefficientwise() {
+    Polynomial f = new Polynomial(F7, 1, 2, 3), g = new Polynomial(F7, 6, 5, 4, 1);
+    assertArrayEquals(new int[] { 0, 0, 0, 1 }, f.add(g).toArray());
+    assertArrayEquals(new int[] { 2, 4, 6, 6 }, f.subtract(g).toArray());
+    assertEquals(-1, f.subtract(f).degree());
+  }
+
+  @Test
+  void rejectsOperandsOverOtherFields() {
+    Polynomial f = new Polynomial(F7, 1, 2, 3), g = new Polynomial(F11, 10, 9);
+    assertThrows(IllegalArgumentException.class, () -> f.add(g));
+    assertThrows(IllegalArgumentException.class, () -> f.subtract(g));
+    assertThrows(IllegalArgumentException.class, () -> f.multiply(g));
+    assertThrows(IllegalArgumentException.class, () -> f.divideAndRemainder(g));
+  }
+}